@@ -0,0 +1,98 @@
+package lexer;
+
+/**
+ * The {@code Automaton} class represents deterministic finite automaton which
+ * recognizes all types of tokens at once. Transitions are stored in the table
+ * with a row for every state and a column for every class of characters.
+ * Objects of this class are immutable.
+ *
+ * @author Ira Korshunova
+ *
+ */
+class Automaton {
+
+	/** State without outgoing transitions */
+	static final int DEAD = 0;
+
+	/** Initial state */
+	static final int START = 1;
+
+	/** Class of character for every ASCII character */
+	private final int[] asciiClasses;
+
+	/** Class of all characters outside of ASCII */
+	private final int otherClass;
+
+	/** Number of classes of characters */
+	private final int classCount;
+
+	/** Transition table, {@code classCount} entries for every state */
+	private final int[] transitions;
+
+	/** Types of tokens accepted in the state in order of their priority */
+	private final int[][] accepts;
+
+	/** Whether token type requires word boundary before the lexeme */
+	private final boolean[] leadingBoundary;
+
+	/** Whether token type requires word boundary after the lexeme */
+	private final boolean[] trailingBoundary;
+
+	Automaton(int[] asciiClasses, int otherClass, int classCount, int[] transitions,
+			int[][] accepts, boolean[] leadingBoundary, boolean[] trailingBoundary) {
+		this.asciiClasses = asciiClasses;
+		this.otherClass = otherClass;
+		this.classCount = classCount;
+		this.transitions = transitions;
+		this.accepts = accepts;
+		this.leadingBoundary = leadingBoundary;
+		this.trailingBoundary = trailingBoundary;
+	}
+
+	/**
+	 * Returns the state after the transition
+	 *
+	 * @param state
+	 *            current state
+	 * @param c
+	 *            input character
+	 * @return next state, {@code DEAD} if there is no transition
+	 */
+	int next(int state, char c) {
+		return transitions[state * classCount + (c < 128 ? asciiClasses[c] : otherClass)];
+	}
+
+	/**
+	 * Returns types of tokens, which are accepted in the specified state
+	 *
+	 * @param state
+	 *            state of the automaton
+	 * @return ordinals of token types in order of their priority
+	 */
+	int[] accepts(int state) {
+		return accepts[state];
+	}
+
+	boolean hasLeadingBoundary(int tokenType) {
+		return leadingBoundary[tokenType];
+	}
+
+	boolean hasTrailingBoundary(int tokenType) {
+		return trailingBoundary[tokenType];
+	}
+
+	/**
+	 * Determines if character is a part of word, as {@code \b} of regular
+	 * expressions does
+	 *
+	 * @param c
+	 *            character
+	 * @return {@code true} if character is letter, digit or underscore
+	 */
+	static boolean isWordCharacter(char c) {
+		if (c < 128)
+			return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+					|| c == '_';
+		return Character.isLetterOrDigit(c);
+	}
+}
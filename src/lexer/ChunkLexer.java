@@ -0,0 +1,128 @@
+package lexer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+import token.SymbolTable;
+import token.Token;
+import token.TokenType;
+
+/**
+ * The {@code ChunkLexer} class tokenizes one chunk of the source
+ * speculatively. The chunk may start in the middle of token or inside the
+ * block comment, so the tokens are not known to be correct. But every token
+ * is exactly the token, which sequential lexer would separate at the same
+ * index, because the matcher reads the whole source. When the lexer finds a
+ * token at the same index, the following tokens of the chunk are correct
+ * while they are adjacent. Positions, where nothing was matched, are skipped.
+ *
+ * @author Ira Korshunova
+ *
+ */
+class ChunkLexer extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Source code */
+	private final CharSequence source;
+
+	/** The index from which to start the scanning */
+	private final int from;
+
+	/** Tokens are separated while they start before this index */
+	private final int limit;
+
+	/** Matcher for this chunk */
+	private final TokenMatcher matcher;
+
+	/** Names of identifiers of this chunk */
+	private final SymbolTable symbolTable = new SymbolTable();
+
+	/** Separated tokens, identifiers are numbered in the local symbol table */
+	private final List<Token> tokens = new ArrayList<Token>();
+
+	/**
+	 * Tokens which have read more than one character after their end: index
+	 * of token in this chunk and the index after the last read character
+	 */
+	private final List<int[]> longLookaheads = new ArrayList<int[]>();
+
+	/**
+	 * Creates {@code ChunkLexer} object
+	 *
+	 * @param matcher
+	 *            matcher, which is used only by this chunk
+	 * @param source
+	 *            source code
+	 * @param from
+	 *            the index from which to start the scanning
+	 * @param limit
+	 *            the index of the end of the chunk
+	 */
+	ChunkLexer(TokenMatcher matcher, CharSequence source, int from, int limit) {
+		this.matcher = matcher;
+		this.source = source;
+		this.from = from;
+		this.limit = limit;
+	}
+
+	@Override
+	protected void compute() {
+		int position = from;
+		while (position < limit) {
+			if (!matcher.match(source, position)) {
+				position++;
+				continue;
+			}
+			int end = matcher.getEnd();
+			TokenType tokenType = matcher.getTokenType();
+			if (tokenType == TokenType.Identifier) {
+				int symbol = symbolTable.intern(source, position, end);
+				tokens.add(new Token(position, end, symbolTable.getName(symbol), tokenType,
+						symbol));
+			} else {
+				tokens.add(new Token(position, end, source, tokenType));
+			}
+			if (matcher.getScanEnd() > end + 1)
+				longLookaheads.add(new int[] { tokens.size() - 1, matcher.getScanEnd() });
+			position = end;
+		}
+	}
+
+	/**
+	 * Returns index of token, which starts at the specified index of the
+	 * source
+	 *
+	 * @param position
+	 *            index in the source
+	 * @return index of token in this chunk or {@code -1}
+	 */
+	int indexOf(int position) {
+		int low = 0;
+		int high = tokens.size() - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int begin = tokens.get(middle).getBegin();
+			if (begin < position)
+				low = middle + 1;
+			else if (begin > position)
+				high = middle - 1;
+			else
+				return middle;
+		}
+		return -1;
+	}
+
+	List<Token> getTokens() {
+		return tokens;
+	}
+
+	List<int[]> getLongLookaheads() {
+		return longLookaheads;
+	}
+
+	SymbolTable getSymbolTable() {
+		return symbolTable;
+	}
+}
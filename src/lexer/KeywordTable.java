@@ -0,0 +1,107 @@
+package lexer;
+
+import java.util.Map;
+
+import token.TokenType;
+
+/**
+ * The {@code KeywordTable} class classifies identifiers as keywords. Keywords
+ * are stored in the open table with perfect hash function, the multiplier of
+ * the function is chosen during the construction so that no two keywords
+ * collide. Lookup computes one hash and compares one candidate.
+ *
+ * @author Ira Korshunova
+ *
+ */
+class KeywordTable {
+
+	/** Multiplier of the hash function */
+	private final int multiplier;
+
+	/** Mask of the table index */
+	private final int mask;
+
+	/** Keywords by their hash */
+	private final String[] words;
+
+	/** Types of keywords by their hash */
+	private final TokenType[] types;
+
+	/**
+	 * Builds table for the specified keywords
+	 *
+	 * @param keywords
+	 *            mapping from type of token to its keyword
+	 */
+	KeywordTable(Map<TokenType, String> keywords) {
+		int size = Integer.highestOneBit(Math.max(1, keywords.size()) * 2 - 1) << 1;
+		int m = 31;
+		String[] table;
+		while ((table = fill(keywords, m, size - 1)) == null) {
+			m += 2;
+			if (m > 1 << 16) {
+				size <<= 1;
+				m = 31;
+			}
+		}
+
+		multiplier = m;
+		mask = size - 1;
+		words = table;
+		types = new TokenType[size];
+		for (Map.Entry<TokenType, String> entry : keywords.entrySet()) {
+			types[index(entry.getValue(), 0, entry.getValue().length())] = entry.getKey();
+		}
+	}
+
+	/**
+	 * Places keywords in the table using the specified hash function
+	 *
+	 * @return filled table or {@code null} if some keywords collide
+	 */
+	private static String[] fill(Map<TokenType, String> keywords, int multiplier, int mask) {
+		String[] table = new String[mask + 1];
+		for (String word : keywords.values()) {
+			int i = hash(word, 0, word.length(), multiplier) & mask;
+			if (table[i] != null)
+				return null;
+			table[i] = word;
+		}
+		return table;
+	}
+
+	private static int hash(CharSequence input, int begin, int end, int multiplier) {
+		int h = end - begin;
+		for (int i = begin; i < end; i++) {
+			h = h * multiplier + input.charAt(i);
+		}
+		return h ^ (h >>> 16);
+	}
+
+	private int index(CharSequence input, int begin, int end) {
+		return hash(input, begin, end, multiplier) & mask;
+	}
+
+	/**
+	 * Returns type of the keyword in the specified part of input
+	 *
+	 * @param input
+	 *            input source
+	 * @param begin
+	 *            the beginning index of the lexeme, inclusive
+	 * @param end
+	 *            the ending index of the lexeme, exclusive
+	 * @return type of keyword or {@code null} if lexeme is not a keyword
+	 */
+	TokenType lookup(CharSequence input, int begin, int end) {
+		int i = index(input, begin, end);
+		String word = words[i];
+		if (word == null || word.length() != end - begin)
+			return null;
+		for (int k = 0; k < word.length(); k++) {
+			if (word.charAt(k) != input.charAt(begin + k))
+				return null;
+		}
+		return types[i];
+	}
+}
@@ -1,15 +1,29 @@
 package lexer;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import exceptions.AnalyzerException;
 
+import token.SymbolTable;
 import token.Token;
+import token.TokenBuffer;
+import token.TokenSource;
 import token.TokenType;
 
 /**
@@ -19,13 +33,75 @@ import token.TokenType;
  * @author Ira Korshunova
  * 
  */
-public class Lexer {
+public class Lexer implements TokenSource {
+
+	/** Powers of ten, which are exactly representable as {@code double} */
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7,
+			1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21,
+			1e22 };
+
+	/** Initial size of the buffer for reading tokens from streams */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	/** Minimal number of characters in one chunk of parallel tokenization */
+	public static final int MIN_CHUNK_SIZE = 1 << 16;
 
 	/** Mapping from type of token to its regular expression */
 	private Map<TokenType, String> regEx;
 
+	/** Mapping from type of keyword to its string */
+	private Map<TokenType, String> keywords;
+
+	/** Automaton compiled from the regular expressions */
+	private Automaton automaton;
+
+	/** Table of keywords */
+	private KeywordTable keywordTable;
+
+	/** Matcher over the automaton */
+	private TokenMatcher matcher;
+
 	/** List of tokens as they appear in the input source */
-	private List<Token> result;
+	private TokenList result;
+
+	/** Names of identifiers, which were found by this lexer */
+	private SymbolTable symbolTable;
+
+	/** Source of the last tokenization */
+	private CharSequence source;
+
+	/** Index of the first token of the last source in the list of tokens */
+	private int firstToken;
+
+	/** Source of the pull-based tokenization */
+	private String pullSource;
+
+	/** Index of the next token of the pull-based tokenization */
+	private int pullPosition;
+
+	/** Token, which was separated by {@code peek} */
+	private Token peeked;
+
+	/** Treatment of auxiliary tokens */
+	private TriviaMode triviaMode = TriviaMode.KEEP;
+
+	/** Treatment of auxiliary tokens during the last tokenization */
+	private TriviaMode sourceTriviaMode;
+
+	/** Index, where the scanning stopped after the last significant token */
+	private int scanPosition;
+
+	/** The beginning index of trivia before the next significant token */
+	private int triviaBegin;
+
+	/**
+	 * Lexical errors of the current tokenization or {@code null} if the
+	 * tokenization stops at the first error
+	 */
+	private List<AnalyzerException> errors;
+
+	/** Whether tokens of the last source contain {@code Error} tokens */
+	private boolean sourceHasErrors;
 
 	/**
 	 * Initializes a newly created {@code Lexer} object
@@ -33,7 +109,13 @@ public class Lexer {
 	public Lexer() {
 		regEx = new TreeMap<TokenType, String>();
 		launchRegEx();
-		result = new ArrayList<Token>();
+		keywords = new TreeMap<TokenType, String>();
+		launchKeywords();
+		automaton = RegExCompiler.compile(regEx);
+		keywordTable = new KeywordTable(keywords);
+		matcher = new TokenMatcher(automaton, keywordTable);
+		result = new TokenList();
+		symbolTable = new SymbolTable();
 	}
 
 	/**
@@ -46,13 +128,207 @@ public class Lexer {
 	 * 
 	 */
 	public void tokenize(String source) throws AnalyzerException {
+		tokenize((CharSequence) source);
+	}
+
+	/**
+	 * Performs the tokenization of the source file. The file is mapped into
+	 * memory and its bytes are scanned without decoding, so indexes of tokens
+	 * are byte offsets in UTF-8 file. Strings of tokens are decoded only when
+	 * they are requested.
+	 * 
+	 * @param file
+	 *            UTF-8 or ASCII file to be analyzed
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws AnalyzerException
+	 *             if lexical error exists in the source
+	 */
+	public void tokenize(File file) throws IOException, AnalyzerException {
+		tokenize(map(file));
+	}
+
+	/**
+	 * Performs the tokenization of the input source code into compact buffer.
+	 * Tokens are not added to the list of this lexer. Values of constants are
+	 * parsed during the tokenization. Unless auxiliary tokens are kept, they
+	 * are not added to the buffer, and trivia of token lies between the ends of
+	 * its neighbours.
+	 * 
+	 * @param source
+	 *            string to be analyzed
+	 * @return buffer with tokens
+	 * @throws AnalyzerException
+	 *             if lexical error exists in the source
+	 */
+	public TokenBuffer tokenizeToBuffer(String source) throws AnalyzerException {
+		return tokenizeToBuffer((CharSequence) source);
+	}
+
+	/**
+	 * Performs the tokenization of the memory-mapped source file into compact
+	 * buffer. Indexes of tokens are byte offsets in UTF-8 file.
+	 * 
+	 * @param file
+	 *            UTF-8 or ASCII file to be analyzed
+	 * @return buffer with tokens
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws AnalyzerException
+	 *             if lexical error exists in the source
+	 */
+	public TokenBuffer tokenizeToBuffer(File file) throws IOException, AnalyzerException {
+		return tokenizeToBuffer(map(file));
+	}
+
+	private TokenBuffer tokenizeToBuffer(CharSequence source) throws AnalyzerException {
+		TokenBuffer buffer = new TokenBuffer(source, symbolTable);
+		int position = 0;
+		while (position < source.length()) {
+			if (!matcher.match(source, position)) {
+				throw new AnalyzerException("Lexical error at position # " + position, position);
+			}
+			int end = matcher.getEnd();
+			TokenType tokenType = matcher.getTokenType();
+			if (triviaMode == TriviaMode.KEEP || !tokenType.isAuxiliary())
+				buffer.add(position, end, tokenType, parseValue(source, position, end, tokenType));
+			position = end;
+		}
+		return buffer;
+	}
+
+	/**
+	 * Maps the file into memory
+	 * 
+	 * @param file
+	 *            file to be mapped
+	 * @return bytes of the file
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	private Utf8Sequence map(File file) throws IOException {
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		MappedByteBuffer bytes;
+		try {
+			FileChannel channel = input.getChannel();
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException("File is too large to be mapped: " + file);
+			}
+			bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			input.close();
+		}
+		return new Utf8Sequence(bytes);
+	}
+
+	/**
+	 * Parses value of the constant or interns identifier. {@code DoubleConstant} with at most 15
+	 * digits is computed by one division, which is correctly rounded, longer
+	 * ones are parsed by {@code Double.parseDouble}.
+	 * 
+	 * @return value for {@code TokenBuffer}
+	 */
+	private long parseValue(CharSequence source, int begin, int end, TokenType tokenType) {
+		if (tokenType == TokenType.Identifier)
+			return symbolTable.intern(source, begin, end);
+		if (tokenType != TokenType.IntConstant && tokenType != TokenType.DoubleConstant)
+			return 0;
+
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = -1;
+		for (int i = begin; i < end; i++) {
+			char c = source.charAt(i);
+			if (c == '.') {
+				fractionDigits = 0;
+				continue;
+			}
+			if (digits < 18)
+				mantissa = mantissa * 10 + (c - '0');
+			digits++;
+			if (fractionDigits != -1)
+				fractionDigits++;
+		}
+		if (tokenType == TokenType.IntConstant)
+			return mantissa;
+		if (digits <= 15 && fractionDigits < POWERS_OF_TEN.length)
+			return Double.doubleToRawLongBits(mantissa / POWERS_OF_TEN[fractionDigits]);
+		return Double.doubleToRawLongBits(Double.parseDouble(source.subSequence(begin, end)
+				.toString()));
+	}
+
+	/**
+	 * Performs the tokenization of the input source code without stopping at
+	 * lexical errors. Characters, from which no token can be separated, form
+	 * {@code Error} token, which lasts until the next token can be separated.
+	 * All tokens are added to the list of this lexer.
+	 * 
+	 * @param source
+	 *            string to be analyzed
+	 * @return lexical errors in the order of their positions
+	 */
+	public List<AnalyzerException> tokenizeWithRecovery(String source) {
+		return tokenizeWithRecovery((CharSequence) source);
+	}
+
+	/**
+	 * Performs the tokenization of the memory-mapped source file without
+	 * stopping at lexical errors. Indexes of tokens are byte offsets in UTF-8
+	 * file.
+	 * 
+	 * @param file
+	 *            UTF-8 or ASCII file to be analyzed
+	 * @return lexical errors in the order of their positions
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public List<AnalyzerException> tokenizeWithRecovery(File file) throws IOException {
+		return tokenizeWithRecovery(map(file));
+	}
+
+	private List<AnalyzerException> tokenizeWithRecovery(CharSequence source) {
+		List<AnalyzerException> diagnostics = new ArrayList<AnalyzerException>();
+		errors = diagnostics;
+		try {
+			tokenize(source);
+		} catch (AnalyzerException e) {
+			// errors are collected instead of being thrown
+			throw new IllegalStateException(e);
+		} finally {
+			errors = null;
+		}
+		return diagnostics;
+	}
+
+	private void tokenize(CharSequence source) throws AnalyzerException {
+		this.source = source;
+		sourceTriviaMode = triviaMode;
+		sourceHasErrors = false;
+		result.settle();
+		firstToken = result.size();
+		if (triviaMode != TriviaMode.KEEP) {
+			triviaBegin = 0;
+			Token token = separateSignificantToken(source, 0);
+			while (token != null) {
+				result.add(token);
+				token = separateSignificantToken(source, scanPosition);
+			}
+			if (scanPosition != source.length()) {
+				throw new AnalyzerException("Lexical error at position # " + scanPosition,
+						scanPosition);
+			}
+			return;
+		}
 		int position = 0;
 		Token token = null;
 		do {
 			token = separateToken(source, position);
+			if (token == null && errors != null)
+				token = createErrorToken(source, position);
 			if (token != null) {
 				position = token.getEnd();
-				result.add(token);
+				result.add(token,
+						token.getTokenType() != TokenType.Error ? lookahead(position) : 0);
 			}
 		} while (token != null && position != source.length());
 		if (position != source.length()) {
@@ -61,6 +337,375 @@ public class Lexer {
 		}
 	}
 
+	/**
+	 * Performs the tokenization of the input source code in parallel. The
+	 * source is split into chunks, which are tokenized speculatively on the
+	 * pool: once from the beginning of the chunk and once after the first end
+	 * of block comment in it, in case the chunk starts inside the comment.
+	 * Then the tokens are joined sequentially: when a token of the chunk
+	 * starts where the previous token ended, the tokens of the chunk are
+	 * taken, otherwise tokens are separated one by one until it happens. The
+	 * result is the same as the result of {@link #tokenize(String)}. Auxiliary
+	 * tokens are skipped only by the sequential tokenization.
+	 * 
+	 * @param source
+	 *            string to be analyzed
+	 * @param pool
+	 *            pool, which runs the tokenization of chunks
+	 * @throws AnalyzerException
+	 *             if lexical error exists in the source
+	 */
+	public void tokenize(String source, ForkJoinPool pool) throws AnalyzerException {
+		int chunks = Math.min(pool.getParallelism(), source.length() / MIN_CHUNK_SIZE);
+		if (chunks < 2 || triviaMode != TriviaMode.KEEP) {
+			tokenize(source);
+			return;
+		}
+
+		int[] limits = new int[chunks];
+		ChunkLexer[] fromStart = new ChunkLexer[chunks];
+		ChunkLexer[] afterComment = new ChunkLexer[chunks];
+		final List<ChunkLexer> lexers = new ArrayList<ChunkLexer>();
+		for (int i = 0; i < chunks; i++) {
+			int from = (int) ((long) source.length() * i / chunks);
+			limits[i] = (int) ((long) source.length() * (i + 1) / chunks);
+			fromStart[i] = new ChunkLexer(new TokenMatcher(automaton, keywordTable), source,
+					from, limits[i]);
+			lexers.add(fromStart[i]);
+			int commentEnd = i == 0 ? -1 : source.indexOf("*/", from);
+			if (commentEnd != -1 && commentEnd + 2 < limits[i]) {
+				afterComment[i] = new ChunkLexer(new TokenMatcher(automaton, keywordTable),
+						source, commentEnd + 2, limits[i]);
+				lexers.add(afterComment[i]);
+			}
+		}
+		pool.invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				invokeAll(lexers);
+			}
+		});
+
+		this.source = source;
+		sourceTriviaMode = triviaMode;
+		sourceHasErrors = false;
+		result.settle();
+		firstToken = result.size();
+		int position = 0;
+		for (int i = 0; i < chunks; i++) {
+			ChunkLexer[] speculations = { fromStart[i], afterComment[i] };
+			while (position < limits[i]) {
+				ChunkLexer adopted = null;
+				int index = -1;
+				for (ChunkLexer lexer : speculations) {
+					if (lexer != null && (index = lexer.indexOf(position)) != -1) {
+						adopted = lexer;
+						break;
+					}
+				}
+				if (adopted != null) {
+					position = adopt(adopted, index);
+					continue;
+				}
+				Token token = separateToken(source, position);
+				if (token == null) {
+					throw new AnalyzerException("Lexical error at position # " + position,
+							position);
+				}
+				position = token.getEnd();
+				result.add(token, lookahead(position));
+			}
+		}
+	}
+
+	/**
+	 * Adds adjacent tokens of the chunk starting from the specified token.
+	 * Identifiers are interned in the symbol table of this lexer.
+	 * 
+	 * @return the ending index of the last added token
+	 */
+	private int adopt(ChunkLexer lexer, int index) {
+		List<Token> tokens = lexer.getTokens();
+		SymbolTable local = lexer.getSymbolTable();
+		int[] symbols = new int[local.size()];
+		Arrays.fill(symbols, -1);
+
+		int first = result.size();
+		int position = tokens.get(index).getBegin();
+		int last = index;
+		for (; last < tokens.size() && tokens.get(last).getBegin() == position; last++) {
+			Token token = tokens.get(last);
+			if (token.getSymbolId() != -1) {
+				int symbol = symbols[token.getSymbolId()];
+				if (symbol == -1) {
+					symbol = symbolTable.intern(token.getTokenString());
+					symbols[token.getSymbolId()] = symbol;
+				}
+				token = new Token(token.getBegin(), token.getEnd(), symbolTable.getName(symbol),
+						TokenType.Identifier, symbol);
+			}
+			result.add(token);
+			position = token.getEnd();
+		}
+		for (int[] lookahead : lexer.getLongLookaheads()) {
+			if (lookahead[0] >= index && lookahead[0] < last) {
+				result.setLookahead(first + lookahead[0] - index,
+						lookahead[1] - tokens.get(lookahead[0]).getEnd());
+			}
+		}
+		return position;
+	}
+
+	/**
+	 * Updates tokens of the last tokenized string after the edit of this
+	 * string. Scanning starts from the first token, which has read characters
+	 * of the edited region, and stops as soon as new token starts where an
+	 * old token started. Only the scanned tokens are replaced in the list.
+	 * The following tokens are the same as before and are not rebuilt: their
+	 * indexes are shifted lazily, when they are read or when a later edit
+	 * passes them. So the time of the update depends on the size of the edit
+	 * and on the distance from the previous edit, except the copying of the
+	 * edited string, which is proportional to its length.
+	 * 
+	 * @param offset
+	 *            index of the edit in the source
+	 * @param removedLength
+	 *            number of removed characters
+	 * @param insertedText
+	 *            inserted string
+	 * @throws AnalyzerException
+	 *             if lexical error exists in the edited source, the tokens
+	 *             before the error are kept as {@code tokenize} does
+	 */
+	public void update(int offset, int removedLength, String insertedText)
+			throws AnalyzerException {
+		if (!(source instanceof String)) {
+			throw new IllegalStateException("No string was tokenized");
+		}
+		if (sourceTriviaMode != TriviaMode.KEEP) {
+			throw new IllegalStateException("Auxiliary tokens were not kept");
+		}
+		if (sourceHasErrors) {
+			throw new IllegalStateException("Tokens contain lexical errors");
+		}
+		String oldSource = (String) source;
+		if (offset < 0 || removedLength < 0 || offset + removedLength > oldSource.length()) {
+			throw new IllegalArgumentException("Illegal edit of the input stream!");
+		}
+		String newSource = oldSource.substring(0, offset) + insertedText
+				+ oldSource.substring(offset + removedLength);
+		int delta = insertedText.length() - removedLength;
+		int editEnd = offset + insertedText.length();
+		List<Token> oldTokens = result.subList(firstToken, result.size());
+		int count = oldTokens.size();
+
+		// first token, which has read the edited region
+		int low = 0;
+		int high = count;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (oldTokens.get(middle).getEnd() < offset)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		int restart = low;
+		int maxLookahead = result.getMaxLookahead();
+		for (int i = low - 1; i >= 0; i--) {
+			int end = oldTokens.get(i).getEnd();
+			if (end + maxLookahead <= offset)
+				break;
+			if (end + result.getLookahead(firstToken + i) > offset)
+				restart = i;
+		}
+
+		List<Token> newTokens = new ArrayList<Token>();
+		List<Integer> newLookaheads = new ArrayList<Integer>();
+		int position = restart < count ? oldTokens.get(restart).getBegin() : restart == 0 ? 0
+				: oldTokens.get(count - 1).getEnd();
+		int next = restart;
+		boolean aligned = false;
+		AnalyzerException error = null;
+		while (position < newSource.length()) {
+			if (position >= editEnd) {
+				int oldPosition = position - delta;
+				while (next < count && oldTokens.get(next).getBegin() < oldPosition)
+					next++;
+				if (next < count
+						&& oldTokens.get(next).getBegin() == oldPosition
+						&& isWordBefore(newSource, position) == isWordBefore(oldSource,
+								oldPosition)) {
+					aligned = true;
+					break;
+				}
+			}
+			Token token = separateToken(newSource, position);
+			if (token == null) {
+				error = new AnalyzerException("Lexical error at position # " + position,
+						position);
+				break;
+			}
+			newTokens.add(token);
+			position = token.getEnd();
+			newLookaheads.add(lookahead(position));
+		}
+
+		int[] lookaheads = new int[newLookaheads.size()];
+		for (int i = 0; i < lookaheads.length; i++)
+			lookaheads[i] = newLookaheads.get(i);
+		result.replace(firstToken + restart, firstToken + (aligned ? next : count), newTokens,
+				lookaheads, delta, newSource);
+		source = newSource;
+
+		if (error == null && result.size() > firstToken) {
+			position = result.get(result.size() - 1).getEnd();
+			if (position != newSource.length()) {
+				error = new AnalyzerException("Lexical error at position # " + position, position);
+			}
+		}
+		if (error != null)
+			throw error;
+	}
+
+	/**
+	 * Returns number of characters, which the matcher has read after the end
+	 * of the last separated token, if it has read more than one character
+	 */
+	private int lookahead(int end) {
+		return matcher.getScanEnd() > end + 1 ? matcher.getScanEnd() - end : 0;
+	}
+
+	private static boolean isWordBefore(String source, int position) {
+		return position > 0 && Automaton.isWordCharacter(source.charAt(position - 1));
+	}
+
+	/**
+	 * Starts pull-based tokenization of the source. Tokens are separated by
+	 * {@link #nextToken()} one at a time and are not added to the list of
+	 * this lexer.
+	 * 
+	 * @param source
+	 *            string to be analyzed
+	 */
+	public void open(String source) {
+		pullSource = source;
+		pullPosition = 0;
+		peeked = null;
+		triviaBegin = 0;
+	}
+
+	/**
+	 * Separates the next token of the source, which was opened by
+	 * {@link #open(String)}
+	 * 
+	 * @return next token or {@code null} if the source is over
+	 * @throws AnalyzerException
+	 *             if lexical error exists in the source
+	 */
+	@Override
+	public Token nextToken() throws AnalyzerException {
+		Token token = peek();
+		peeked = null;
+		return token;
+	}
+
+	/**
+	 * Separates the next token of the source, which was opened by
+	 * {@link #open(String)}, without moving past it
+	 * 
+	 * @return next token or {@code null} if the source is over
+	 * @throws AnalyzerException
+	 *             if lexical error exists in the source
+	 */
+	@Override
+	public Token peek() throws AnalyzerException {
+		if (pullSource == null) {
+			throw new IllegalStateException("No source was opened");
+		}
+		if (peeked == null && pullPosition < pullSource.length()) {
+			if (triviaMode != TriviaMode.KEEP) {
+				peeked = separateSignificantToken(pullSource, pullPosition);
+				pullPosition = scanPosition;
+				if (peeked == null && pullPosition != pullSource.length()) {
+					throw new AnalyzerException("Lexical error at position # " + pullPosition,
+							pullPosition);
+				}
+				return peeked;
+			}
+			peeked = separateToken(pullSource, pullPosition);
+			if (peeked == null) {
+				throw new AnalyzerException("Lexical error at position # " + pullPosition,
+						pullPosition);
+			}
+			pullPosition = peeked.getEnd();
+		}
+		return peeked;
+	}
+
+	/**
+	 * Creates reader, which tokenizes the character stream through the buffer
+	 * of fixed size. Tokens are not added to the list of this lexer.
+	 * 
+	 * @param source
+	 *            stream of characters to be analyzed
+	 * @return reader of tokens
+	 */
+	public TokenReader openReader(Reader source) {
+		return new TokenReader(new TokenMatcher(automaton, keywordTable), symbolTable, source,
+				DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates reader, which tokenizes the channel through the buffer of fixed
+	 * size. Malformed input is replaced as {@code FileReader} does.
+	 * 
+	 * @param source
+	 *            channel to be analyzed
+	 * @param charset
+	 *            charset of the channel
+	 * @return reader of tokens
+	 */
+	public TokenReader openReader(ReadableByteChannel source, Charset charset) {
+		Reader reader = Channels.newReader(source,
+				charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+						.onUnmappableCharacter(CodingErrorAction.REPLACE), DEFAULT_BUFFER_SIZE);
+		return openReader(reader);
+	}
+
+	/**
+	 * Sets the treatment of auxiliary tokens for the following tokenizations.
+	 * Tokens of the source, which was tokenized without keeping auxiliary
+	 * tokens, can't be updated.
+	 * 
+	 * @param triviaMode
+	 *            treatment of comments, whitespaces, tabs and newlines
+	 */
+	public void setTriviaMode(TriviaMode triviaMode) {
+		this.triviaMode = triviaMode;
+	}
+
+	/**
+	 * Returns the treatment of auxiliary tokens for the following
+	 * tokenizations
+	 * 
+	 * @return treatment of comments, whitespaces, tabs and newlines
+	 */
+	public TriviaMode getTriviaMode() {
+		return triviaMode;
+	}
+
+	/**
+	 * Returns table with names of identifiers. Numbers of identifiers in
+	 * tokens refer to this table.
+	 * 
+	 * @return symbol table
+	 */
+	public SymbolTable getSymbolTable() {
+		return symbolTable;
+	}
+
 	/**
 	 * Returns a sequence of tokens
 	 * 
@@ -88,7 +733,10 @@ public class Lexer {
 
 	/**
 	 * Scans the source from the specific index and returns the first separated
-	 * token
+	 * token. Every character is read once by the automaton, the longest lexeme
+	 * wins and ties are resolved by the order of {@code TokenType}. String of
+	 * token is taken from the source when it's requested, identifiers are
+	 * interned in the symbol table.
 	 * 
 	 * @param source
 	 *            source code to be scanned
@@ -97,25 +745,99 @@ public class Lexer {
 	 * @return first separated token or {@code null} if no token was found
 	 * 
 	 */
-	private Token separateToken(String source, int fromIndex) {
+	private Token separateToken(CharSequence source, int fromIndex) {
 		if (fromIndex < 0 || fromIndex >= source.length()) {
 			throw new IllegalArgumentException("Illegal index in the input stream!");
 		}
-		for (TokenType tokenType : TokenType.values()) {
-			Pattern p = Pattern.compile(".{" + fromIndex + "}" + regEx.get(tokenType),
-					Pattern.DOTALL);
-			Matcher m = p.matcher(source);
-			if (m.matches()) {
-				String lexema = m.group(1);
-				return new Token(fromIndex, fromIndex + lexema.length(), lexema, tokenType);
-			}
+		if (matcher.match(source, fromIndex)) {
+			return createToken(source, fromIndex);
 		}
 
 		return null;
 	}
 
 	/**
-	 * Creates map from token types to its regular expressions
+	 * Creates {@code Error} token, which starts at the specified index and
+	 * lasts until the next token can be separated, and saves the lexical
+	 * error
+	 */
+	private Token createErrorToken(CharSequence source, int fromIndex) {
+		int end = fromIndex + 1;
+		while (end < source.length() && !matcher.match(source, end))
+			end++;
+		errors.add(new AnalyzerException("Lexical error at position # " + fromIndex, fromIndex));
+		sourceHasErrors = true;
+		return new Token(fromIndex, end, source, TokenType.Error);
+	}
+
+	/**
+	 * Creates token, which was just matched by the matcher
+	 */
+	private Token createToken(CharSequence source, int fromIndex) {
+		int end = matcher.getEnd();
+		TokenType tokenType = matcher.getTokenType();
+		if (tokenType == TokenType.Identifier) {
+			int symbol = symbolTable.intern(source, fromIndex, end);
+			return new Token(fromIndex, end, symbolTable.getName(symbol), tokenType, symbol);
+		}
+		return new Token(fromIndex, end, source, tokenType);
+	}
+
+	/**
+	 * Scans the source from the specific index and returns the first
+	 * significant token. Auxiliary tokens are matched, but no objects are
+	 * created for them. If trivia is attached, trailing trivia of token
+	 * reaches the first newline after it or the end of the source, the rest is
+	 * leading trivia of the next token. The scanning stops at the next
+	 * significant token, its index is saved in {@code scanPosition}.
+	 * 
+	 * @param source
+	 *            source code to be scanned
+	 * @param fromIndex
+	 *            the index from which to start the scanning
+	 * @return first significant token or {@code null} if no token was found
+	 */
+	private Token separateSignificantToken(CharSequence source, int fromIndex) {
+		int length = source.length();
+		int position = fromIndex;
+		boolean matched = false;
+		while (position < length) {
+			matched = matcher.match(source, position);
+			if (!matched || !matcher.getTokenType().isAuxiliary())
+				break;
+			position = matcher.getEnd();
+		}
+		scanPosition = position;
+		if (position == length || !matched && errors == null)
+			return null;
+
+		Token token = matched ? createToken(source, position) : createErrorToken(source,
+				position);
+		position = token.getEnd();
+		if (triviaMode != TriviaMode.ATTACH) {
+			scanPosition = position;
+			return token;
+		}
+
+		int trailingEnd = -1;
+		while (position < length && matcher.match(source, position)
+				&& matcher.getTokenType().isAuxiliary()) {
+			position = matcher.getEnd();
+			if (trailingEnd == -1 && source.charAt(position - 1) == '\n')
+				trailingEnd = position;
+		}
+		if (trailingEnd == -1 || position == length)
+			trailingEnd = position;
+		token.setTrivia(triviaBegin, trailingEnd);
+		triviaBegin = trailingEnd;
+		scanPosition = position;
+		return token;
+	}
+
+	/**
+	 * Creates map from token types to its regular expressions. The expressions
+	 * are compiled into one automaton, so they have to keep the form
+	 * {@code \b(lexeme)\b.*} accepted by {@code RegExCompiler}
 	 * 
 	 */
 	private void launchRegEx() {
@@ -130,23 +852,8 @@ public class Lexer {
 		regEx.put(TokenType.ClosingCurlyBrace, "(\\}).*");
 		regEx.put(TokenType.DoubleConstant, "\\b(\\d{1,9}\\.\\d{1,32})\\b.*");
 		regEx.put(TokenType.IntConstant, "\\b(\\d{1,9})\\b.*");
-		regEx.put(TokenType.Void, "\\b(void)\\b.*");
-		regEx.put(TokenType.Int, "\\b(int)\\b.*");
-		regEx.put(TokenType.Double, "\\b(int|double)\\b.*");
 		regEx.put(TokenType.Tab, "(\\t).*");
 		regEx.put(TokenType.NewLine, "(\\n).*");
-		regEx.put(TokenType.Public, "\\b(public)\\b.*");
-		regEx.put(TokenType.Private, "\\b(private)\\b.*");
-		regEx.put(TokenType.False, "\\b(false)\\b.*");
-		regEx.put(TokenType.True, "\\b(true)\\b.*");
-		regEx.put(TokenType.Null, "\\b(null)\\b.*");
-		regEx.put(TokenType.Return, "\\b(return)\\b.*");
-		regEx.put(TokenType.New, "\\b(new)\\b.*");
-		regEx.put(TokenType.Class, "\\b(class)\\b.*");
-		regEx.put(TokenType.If, "\\b(if)\\b.*");
-		regEx.put(TokenType.Else, "\\b(else)\\b.*");
-		regEx.put(TokenType.While, "\\b(while)\\b.*");
-		regEx.put(TokenType.Static, "\\b(static)\\b.*");
 		regEx.put(TokenType.Point, "(\\.).*");
 		regEx.put(TokenType.Plus, "(\\+{1}).*");
 		regEx.put(TokenType.Minus, "(\\-{1}).*");
@@ -159,4 +866,27 @@ public class Lexer {
 		regEx.put(TokenType.Less, "(<).*");
 		regEx.put(TokenType.Identifier, "\\b([a-zA-Z]{1}[0-9a-zA-Z_]{0,31})\\b.*");
 	}
+
+	/**
+	 * Creates map from keyword types to their strings. Keywords are separated
+	 * as identifiers and then looked up in the {@code KeywordTable}
+	 * 
+	 */
+	private void launchKeywords() {
+		keywords.put(TokenType.Void, "void");
+		keywords.put(TokenType.Int, "int");
+		keywords.put(TokenType.Double, "double");
+		keywords.put(TokenType.Public, "public");
+		keywords.put(TokenType.Private, "private");
+		keywords.put(TokenType.False, "false");
+		keywords.put(TokenType.True, "true");
+		keywords.put(TokenType.Null, "null");
+		keywords.put(TokenType.Return, "return");
+		keywords.put(TokenType.New, "new");
+		keywords.put(TokenType.Class, "class");
+		keywords.put(TokenType.If, "if");
+		keywords.put(TokenType.Else, "else");
+		keywords.put(TokenType.While, "while");
+		keywords.put(TokenType.Static, "static");
+	}
 }
\ No newline at end of file
@@ -0,0 +1,563 @@
+package lexer;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import token.TokenType;
+
+/**
+ * The {@code RegExCompiler} class compiles the mapping from types of tokens to
+ * their regular expressions into one deterministic automaton. Every regular
+ * expression has to be written in the form which was used by the lexer for
+ * matching from the specific index:
+ *
+ * <blockquote>
+ *
+ * <pre>
+ *  \b(lexeme)\b.*
+ * </pre>
+ *
+ * </blockquote>
+ *
+ * The word boundaries are optional, the group contains the lexeme and
+ * {@code .*} stands for the rest of the input. The lexeme may use literals,
+ * escapes ({@code \d}, {@code \w}, {@code \t}, {@code \n}, {@code \r}),
+ * {@code .}, character classes, groups, alternation and the quantifiers
+ * {@code * + ? {m} {m,} {m,n}}. A lazy quantifier makes the token match the
+ * shortest lexeme, otherwise the longest one is taken. Dot matches any
+ * character, as with {@code Pattern.DOTALL}.
+ *
+ * @author Ira Korshunova
+ *
+ */
+class RegExCompiler {
+
+	/** Index of the symbol which stands for every character outside of ASCII */
+	private static final int OTHER = 128;
+
+	/** Number of distinct input symbols */
+	private static final int SYMBOLS = 129;
+
+	/** Node kinds of the parsed regular expression */
+	private static final int CHARS = 0, CONCAT = 1, ALTERNATION = 2, REPEAT = 3, BOUNDARY = 4;
+
+	/** Parsed regular expression */
+	private static class Node {
+		int kind;
+		BitSet chars;
+		List<Node> children = new ArrayList<Node>();
+		int min;
+		int max;
+		boolean lazy;
+		boolean group;
+
+		Node(int kind) {
+			this.kind = kind;
+		}
+	}
+
+	/** State of nondeterministic automaton */
+	private static class State {
+		BitSet chars;
+		int target = -1;
+		List<Integer> epsilon = new ArrayList<Integer>();
+		int tokenType;
+		boolean accepting;
+
+		State(int tokenType) {
+			this.tokenType = tokenType;
+		}
+	}
+
+	/** States of nondeterministic automaton */
+	private List<State> states = new ArrayList<State>();
+
+	/** Token types which match the shortest lexeme */
+	private boolean[] lazy = new boolean[TokenType.values().length];
+
+	/** Regular expression which is being parsed */
+	private String regEx;
+
+	/** Current position in the regular expression */
+	private int position;
+
+	/**
+	 * Compiles regular expressions of token types into deterministic
+	 * automaton. Priority of the token type is its order in the
+	 * {@code TokenType} enumeration.
+	 *
+	 * @param regEx
+	 *            mapping from type of token to its regular expression
+	 * @return compiled automaton
+	 * @throws IllegalArgumentException
+	 *             if regular expression can not be compiled
+	 */
+	static Automaton compile(Map<TokenType, String> regEx) {
+		return new RegExCompiler().build(regEx);
+	}
+
+	private Automaton build(Map<TokenType, String> regEx) {
+		int typesCount = TokenType.values().length;
+		boolean[] leadingBoundary = new boolean[typesCount];
+		boolean[] trailingBoundary = new boolean[typesCount];
+
+		State start = new State(-1);
+		states.add(start);
+		for (Map.Entry<TokenType, String> entry : regEx.entrySet()) {
+			int type = entry.getKey().ordinal();
+			List<Node> parts = parseEnvelope(entry.getKey(), entry.getValue());
+			int index = 0;
+			if (parts.get(index).kind == BOUNDARY) {
+				leadingBoundary[type] = true;
+				index++;
+			}
+			Node lexeme = parts.get(index++);
+			if (index < parts.size() && parts.get(index).kind == BOUNDARY) {
+				trailingBoundary[type] = true;
+			}
+
+			int[] fragment = buildFragment(lexeme, type);
+			states.get(fragment[1]).accepting = true;
+			start.epsilon.add(fragment[0]);
+		}
+
+		return buildAutomaton(leadingBoundary, trailingBoundary);
+	}
+
+	/**
+	 * Splits regular expression into boundaries and the lexeme group
+	 */
+	private List<Node> parseEnvelope(TokenType tokenType, String expression) {
+		regEx = expression;
+		position = 0;
+		Node root = parseAlternation(tokenType.ordinal());
+		if (position != regEx.length())
+			throw unsupported(tokenType);
+
+		List<Node> parts = new ArrayList<Node>();
+		if (root.kind == CONCAT)
+			parts.addAll(root.children);
+		else
+			parts.add(root);
+
+		// the rest of the input
+		Node last = parts.remove(parts.size() - 1);
+		if (last.kind != REPEAT || last.max != Integer.MAX_VALUE
+				|| last.children.get(0).kind != CHARS
+				|| last.children.get(0).chars.cardinality() != SYMBOLS)
+			throw unsupported(tokenType);
+
+		int i = 0;
+		if (i < parts.size() && parts.get(i).kind == BOUNDARY)
+			i++;
+		if (i == parts.size() || !parts.get(i).group)
+			throw unsupported(tokenType);
+		i++;
+		if (i < parts.size() && parts.get(i).kind == BOUNDARY)
+			i++;
+		if (i != parts.size())
+			throw unsupported(tokenType);
+		return parts;
+	}
+
+	private IllegalArgumentException unsupported(TokenType tokenType) {
+		return new IllegalArgumentException("Unsupported regular expression for " + tokenType
+				+ ": " + regEx);
+	}
+
+	private Node parseAlternation(int tokenType) {
+		Node first = parseConcatenation(tokenType);
+		if (position >= regEx.length() || regEx.charAt(position) != '|')
+			return first;
+		Node alternation = new Node(ALTERNATION);
+		alternation.children.add(first);
+		while (position < regEx.length() && regEx.charAt(position) == '|') {
+			position++;
+			alternation.children.add(parseConcatenation(tokenType));
+		}
+		return alternation;
+	}
+
+	private Node parseConcatenation(int tokenType) {
+		Node concatenation = new Node(CONCAT);
+		while (position < regEx.length() && regEx.charAt(position) != '|'
+				&& regEx.charAt(position) != ')') {
+			concatenation.children.add(parseRepetition(tokenType));
+		}
+		if (concatenation.children.size() == 1)
+			return concatenation.children.get(0);
+		return concatenation;
+	}
+
+	private Node parseRepetition(int tokenType) {
+		Node atom = parseAtom(tokenType);
+		while (position < regEx.length()) {
+			char c = regEx.charAt(position);
+			int min, max;
+			if (c == '*') {
+				min = 0;
+				max = Integer.MAX_VALUE;
+				position++;
+			} else if (c == '+') {
+				min = 1;
+				max = Integer.MAX_VALUE;
+				position++;
+			} else if (c == '?') {
+				min = 0;
+				max = 1;
+				position++;
+			} else if (c == '{') {
+				int close = regEx.indexOf('}', position);
+				if (close == -1)
+					throw unsupported(TokenType.values()[tokenType]);
+				String bounds = regEx.substring(position + 1, close);
+				int comma = bounds.indexOf(',');
+				try {
+					if (comma == -1) {
+						min = max = Integer.parseInt(bounds);
+					} else {
+						min = Integer.parseInt(bounds.substring(0, comma));
+						max = comma == bounds.length() - 1 ? Integer.MAX_VALUE : Integer
+								.parseInt(bounds.substring(comma + 1));
+					}
+				} catch (NumberFormatException e) {
+					throw unsupported(TokenType.values()[tokenType]);
+				}
+				position = close + 1;
+			} else {
+				break;
+			}
+			if (atom.kind == BOUNDARY)
+				throw unsupported(TokenType.values()[tokenType]);
+
+			Node repeat = new Node(REPEAT);
+			repeat.children.add(atom);
+			repeat.min = min;
+			repeat.max = max;
+			if (position < regEx.length() && regEx.charAt(position) == '?') {
+				repeat.lazy = true;
+				lazy[tokenType] = true;
+				position++;
+			}
+			atom = repeat;
+		}
+		return atom;
+	}
+
+	private Node parseAtom(int tokenType) {
+		char c = regEx.charAt(position++);
+		Node node;
+		switch (c) {
+		case '(':
+			node = parseAlternation(tokenType);
+			if (position >= regEx.length() || regEx.charAt(position) != ')')
+				throw unsupported(TokenType.values()[tokenType]);
+			position++;
+			if (node.group) {
+				Node wrapper = new Node(CONCAT);
+				wrapper.children.add(node);
+				node = wrapper;
+			}
+			node.group = true;
+			return node;
+		case '[':
+			node = new Node(CHARS);
+			node.chars = parseCharacterClass(tokenType);
+			return node;
+		case '.':
+			node = new Node(CHARS);
+			node.chars = new BitSet(SYMBOLS);
+			node.chars.set(0, SYMBOLS);
+			return node;
+		case '\\':
+			if (regEx.charAt(position) == 'b') {
+				position++;
+				return new Node(BOUNDARY);
+			}
+			node = new Node(CHARS);
+			node.chars = parseEscape();
+			return node;
+		case ')':
+		case '|':
+		case '*':
+		case '+':
+		case '?':
+		case '{':
+			throw unsupported(TokenType.values()[tokenType]);
+		default:
+			node = new Node(CHARS);
+			node.chars = new BitSet(SYMBOLS);
+			node.chars.set(symbol(c));
+			return node;
+		}
+	}
+
+	private BitSet parseCharacterClass(int tokenType) {
+		BitSet chars = new BitSet(SYMBOLS);
+		boolean negated = false;
+		if (position < regEx.length() && regEx.charAt(position) == '^') {
+			negated = true;
+			position++;
+		}
+		while (position < regEx.length() && regEx.charAt(position) != ']') {
+			char c = regEx.charAt(position++);
+			if (c == '\\') {
+				BitSet escaped = parseEscape();
+				chars.or(escaped);
+				continue;
+			}
+			if (position + 1 < regEx.length() && regEx.charAt(position) == '-'
+					&& regEx.charAt(position + 1) != ']') {
+				char to = regEx.charAt(position + 1);
+				position += 2;
+				for (char r = c; r <= to; r++)
+					chars.set(symbol(r));
+			} else {
+				chars.set(symbol(c));
+			}
+		}
+		if (position >= regEx.length())
+			throw unsupported(TokenType.values()[tokenType]);
+		position++;
+		if (negated)
+			chars.flip(0, SYMBOLS);
+		return chars;
+	}
+
+	private BitSet parseEscape() {
+		char c = regEx.charAt(position++);
+		BitSet chars = new BitSet(SYMBOLS);
+		switch (c) {
+		case 'd':
+			chars.set('0', '9' + 1);
+			break;
+		case 'w':
+			chars.set('0', '9' + 1);
+			chars.set('a', 'z' + 1);
+			chars.set('A', 'Z' + 1);
+			chars.set('_');
+			break;
+		case 't':
+			chars.set('\t');
+			break;
+		case 'n':
+			chars.set('\n');
+			break;
+		case 'r':
+			chars.set('\r');
+			break;
+		case 'f':
+			chars.set('\f');
+			break;
+		default:
+			chars.set(symbol(c));
+		}
+		return chars;
+	}
+
+	private static int symbol(char c) {
+		return c < OTHER ? c : OTHER;
+	}
+
+	/**
+	 * Builds nondeterministic automaton for the node
+	 *
+	 * @return indexes of start and end states
+	 */
+	private int[] buildFragment(Node node, int tokenType) {
+		int start, end;
+		switch (node.kind) {
+		case CHARS:
+			start = newState(tokenType);
+			end = newState(tokenType);
+			states.get(start).chars = node.chars;
+			states.get(start).target = end;
+			return new int[] { start, end };
+		case CONCAT:
+			start = end = newState(tokenType);
+			for (Node child : node.children) {
+				int[] fragment = buildFragment(child, tokenType);
+				states.get(end).epsilon.add(fragment[0]);
+				end = fragment[1];
+			}
+			return new int[] { start, end };
+		case ALTERNATION:
+			start = newState(tokenType);
+			end = newState(tokenType);
+			for (Node child : node.children) {
+				int[] fragment = buildFragment(child, tokenType);
+				states.get(start).epsilon.add(fragment[0]);
+				states.get(fragment[1]).epsilon.add(end);
+			}
+			return new int[] { start, end };
+		case REPEAT:
+			Node child = node.children.get(0);
+			start = end = newState(tokenType);
+			for (int i = 0; i < node.min; i++) {
+				int[] fragment = buildFragment(child, tokenType);
+				states.get(end).epsilon.add(fragment[0]);
+				end = fragment[1];
+			}
+			if (node.max == Integer.MAX_VALUE) {
+				int[] fragment = buildFragment(child, tokenType);
+				int exit = newState(tokenType);
+				states.get(end).epsilon.add(fragment[0]);
+				states.get(end).epsilon.add(exit);
+				states.get(fragment[1]).epsilon.add(end);
+				end = exit;
+			} else {
+				int exit = newState(tokenType);
+				for (int i = node.min; i < node.max; i++) {
+					int[] fragment = buildFragment(child, tokenType);
+					states.get(end).epsilon.add(fragment[0]);
+					states.get(end).epsilon.add(exit);
+					end = fragment[1];
+				}
+				states.get(end).epsilon.add(exit);
+				end = exit;
+			}
+			return new int[] { start, end };
+		default:
+			throw new IllegalArgumentException("Word boundary is allowed only around the lexeme");
+		}
+	}
+
+	private int newState(int tokenType) {
+		states.add(new State(tokenType));
+		return states.size() - 1;
+	}
+
+	/**
+	 * Converts nondeterministic automaton to deterministic one by subset
+	 * construction
+	 */
+	private Automaton buildAutomaton(boolean[] leadingBoundary, boolean[] trailingBoundary) {
+		int[] classes = buildClasses();
+		int classCount = 0;
+		for (int c : classes)
+			classCount = Math.max(classCount, c + 1);
+		int[] representatives = new int[classCount];
+		for (int s = SYMBOLS - 1; s >= 0; s--)
+			representatives[classes[s]] = s;
+
+		Map<BitSet, Integer> index = new HashMap<BitSet, Integer>();
+		List<BitSet> sets = new ArrayList<BitSet>();
+		BitSet dead = new BitSet();
+		index.put(dead, Automaton.DEAD);
+		sets.add(dead);
+		BitSet initial = new BitSet();
+		initial.set(0);
+		initial = closure(initial);
+		index.put(initial, Automaton.START);
+		sets.add(initial);
+
+		List<int[]> rows = new ArrayList<int[]>();
+		for (int current = 0; current < sets.size(); current++) {
+			BitSet set = sets.get(current);
+			int[] row = new int[classCount];
+			for (int c = 0; c < classCount && current != Automaton.DEAD; c++) {
+				BitSet move = new BitSet();
+				for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+					State state = states.get(s);
+					if (state.chars != null && state.chars.get(representatives[c]))
+						move.set(state.target);
+				}
+				move = closure(move);
+				Integer target = index.get(move);
+				if (target == null) {
+					target = sets.size();
+					index.put(move, target);
+					sets.add(move);
+				}
+				row[c] = target;
+			}
+			rows.add(row);
+		}
+
+		int[] transitions = new int[rows.size() * classCount];
+		int[][] accepts = new int[rows.size()][];
+		for (int i = 0; i < rows.size(); i++) {
+			System.arraycopy(rows.get(i), 0, transitions, i * classCount, classCount);
+			BitSet acceptedTypes = new BitSet();
+			BitSet set = sets.get(i);
+			for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+				if (states.get(s).accepting)
+					acceptedTypes.set(states.get(s).tokenType);
+			}
+			accepts[i] = new int[acceptedTypes.cardinality()];
+			int k = 0;
+			for (int t = acceptedTypes.nextSetBit(0); t >= 0; t = acceptedTypes.nextSetBit(t + 1))
+				accepts[i][k++] = t;
+		}
+
+		int[] asciiClasses = new int[OTHER];
+		System.arraycopy(classes, 0, asciiClasses, 0, OTHER);
+		return new Automaton(asciiClasses, classes[OTHER], classCount, transitions, accepts,
+				leadingBoundary, trailingBoundary);
+	}
+
+	/**
+	 * Splits input symbols into classes of symbols with equal transitions
+	 *
+	 * @return class for every input symbol
+	 */
+	private int[] buildClasses() {
+		List<BitSet> distinct = new ArrayList<BitSet>();
+		for (State s : states) {
+			if (s.chars != null && !distinct.contains(s.chars))
+				distinct.add(s.chars);
+		}
+		Map<BitSet, Integer> signatures = new HashMap<BitSet, Integer>();
+		int[] classes = new int[SYMBOLS];
+		for (int symbol = 0; symbol < SYMBOLS; symbol++) {
+			BitSet signature = new BitSet();
+			for (int i = 0; i < distinct.size(); i++) {
+				if (distinct.get(i).get(symbol))
+					signature.set(i);
+			}
+			Integer c = signatures.get(signature);
+			if (c == null) {
+				c = signatures.size();
+				signatures.put(signature, c);
+			}
+			classes[symbol] = c;
+		}
+		return classes;
+	}
+
+	/**
+	 * Computes epsilon closure of the set of states. When the accepting state
+	 * of the token which matches the shortest lexeme is reached, other states
+	 * of this token are dropped, so the lexeme can't be extended.
+	 */
+	private BitSet closure(BitSet set) {
+		BitSet result = (BitSet) set.clone();
+		List<Integer> stack = new ArrayList<Integer>();
+		for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1))
+			stack.add(s);
+		while (!stack.isEmpty()) {
+			State state = states.get(stack.remove(stack.size() - 1));
+			for (int next : state.epsilon) {
+				if (!result.get(next)) {
+					result.set(next);
+					stack.add(next);
+				}
+			}
+		}
+
+		for (int s = result.nextSetBit(0); s >= 0; s = result.nextSetBit(s + 1)) {
+			State state = states.get(s);
+			if (state.accepting && lazy[state.tokenType]) {
+				for (int other = result.nextSetBit(0); other >= 0; other = result
+						.nextSetBit(other + 1)) {
+					if (other != s && states.get(other).tokenType == state.tokenType)
+						result.clear(other);
+				}
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,251 @@
+package lexer;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import token.Token;
+
+/**
+ * The {@code TokenList} class represents list of tokens, which is edited in
+ * place. Tokens are kept in the array with a gap at the last edit, so the
+ * edit doesn't move the following tokens. They are not rebuilt either, when
+ * the edit changes the length of the source: the sum of changes after the gap
+ * is kept in {@code tailDelta}, every cell remembers the shift, which its
+ * token has missed, and the token is shifted only when it's read. So the cost
+ * of the edit depends on the number of replaced tokens and on the distance
+ * from the previous edit, not on the length of the list.
+ * <p>
+ * Reading doesn't change the list, so the list can be read by several
+ * threads, while it isn't edited.
+ *
+ * @author Ira Korshunova
+ *
+ */
+class TokenList extends AbstractList<Token> implements RandomAccess {
+
+	/** Tokens before the gap and tokens after the gap */
+	private Token[] tokens = new Token[16];
+
+	/**
+	 * Shifts, which are subtracted from the shift of the cell to get the
+	 * shift, which its token has missed. Cells before the gap are not
+	 * shifted, cells after the gap are shifted by {@code tailDelta}.
+	 */
+	private int[] bases = new int[16];
+
+	/**
+	 * Numbers of characters, which were read by the lexer after the end of
+	 * token, if there were more than one, in the same order as tokens
+	 */
+	private int[] lookaheads = new int[16];
+
+	/** The greatest lookahead, which was ever stored in this list */
+	private int maxLookahead;
+
+	/** Index of the first cell of the gap */
+	private int gapStart;
+
+	/** Index of the first token after the gap */
+	private int gapEnd = 16;
+
+	/** Sum of changes of the length of the source at the gap */
+	private int tailDelta;
+
+	/** Source, which the shifted tokens take their strings from */
+	private CharSequence source;
+
+	/** Number of the first tokens, which are certainly not shifted */
+	private int settled;
+
+	@Override
+	public Token get(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		if (index < gapStart)
+			return shifted(index, 0);
+		return shifted(index + gapEnd - gapStart, tailDelta);
+	}
+
+	@Override
+	public int size() {
+		return tokens.length - gapEnd + gapStart;
+	}
+
+	@Override
+	public boolean add(Token token) {
+		add(token, 0);
+		return true;
+	}
+
+	/**
+	 * Appends the token to the end of the list
+	 *
+	 * @param token
+	 *            token
+	 * @param lookahead
+	 *            number of characters, which were read after the end of
+	 *            token, or zero
+	 */
+	void add(Token token, int lookahead) {
+		moveGap(size());
+		if (gapStart == gapEnd)
+			grow(1);
+		tokens[gapStart] = token;
+		bases[gapStart] = 0;
+		lookaheads[gapStart++] = lookahead;
+		maxLookahead = Math.max(maxLookahead, lookahead);
+		modCount++;
+	}
+
+	/**
+	 * Returns number of characters, which were read after the end of token
+	 *
+	 * @param index
+	 *            index of token
+	 * @return number of characters or zero, if the lexer has read at most one
+	 *         character after the end of token
+	 */
+	int getLookahead(int index) {
+		return lookaheads[index < gapStart ? index : index + gapEnd - gapStart];
+	}
+
+	void setLookahead(int index, int lookahead) {
+		lookaheads[index < gapStart ? index : index + gapEnd - gapStart] = lookahead;
+		maxLookahead = Math.max(maxLookahead, lookahead);
+	}
+
+	/**
+	 * Returns the upper bound of lookaheads of tokens in this list
+	 *
+	 * @return number of characters
+	 */
+	int getMaxLookahead() {
+		return maxLookahead;
+	}
+
+	/**
+	 * Replaces tokens after the edit of the source. The following tokens are
+	 * shifted by {@code delta} lazily.
+	 *
+	 * @param from
+	 *            index of the first replaced token
+	 * @param to
+	 *            index after the last replaced token
+	 * @param newTokens
+	 *            tokens, which are inserted instead
+	 * @param newLookaheads
+	 *            numbers of characters, which were read after the ends of new
+	 *            tokens
+	 * @param delta
+	 *            change of the length of the source
+	 * @param newSource
+	 *            source after the edit
+	 */
+	void replace(int from, int to, List<Token> newTokens, int[] newLookaheads, int delta,
+			CharSequence newSource) {
+		moveGap(to);
+		Arrays.fill(tokens, from, gapStart, null);
+		gapStart = from;
+		if (gapEnd - gapStart < newTokens.size())
+			grow(newTokens.size());
+		for (int i = 0; i < newTokens.size(); i++) {
+			tokens[gapStart] = newTokens.get(i);
+			bases[gapStart] = 0;
+			lookaheads[gapStart++] = newLookaheads[i];
+			maxLookahead = Math.max(maxLookahead, newLookaheads[i]);
+		}
+		tailDelta += delta;
+		source = newSource;
+		settled = Math.min(settled, from);
+		modCount++;
+	}
+
+	/**
+	 * Shifts tokens of the edited source, so they don't depend on the source,
+	 * which is given to the next {@code replace}. It's called before tokens
+	 * of another source are added.
+	 */
+	void settle() {
+		moveGap(size());
+		for (int i = settled; i < gapStart; i++) {
+			if (bases[i] != 0) {
+				tokens[i] = shifted(i, 0);
+				bases[i] = 0;
+			}
+		}
+		settled = gapStart;
+	}
+
+	/**
+	 * Moves the gap before the token with the specified index. Tokens are not
+	 * shifted, only their bases are changed by {@code tailDelta}.
+	 */
+	private void moveGap(int index) {
+		if (index < gapStart) {
+			int count = gapStart - index;
+			gapStart -= count;
+			gapEnd -= count;
+			move(gapStart, gapEnd, count, tailDelta);
+		} else if (index > gapStart) {
+			int count = index - gapStart;
+			move(gapEnd, gapStart, count, -tailDelta);
+			gapStart += count;
+			gapEnd += count;
+		}
+	}
+
+	private void move(int from, int to, int count, int baseDelta) {
+		System.arraycopy(tokens, from, tokens, to, count);
+		System.arraycopy(bases, from, bases, to, count);
+		System.arraycopy(lookaheads, from, lookaheads, to, count);
+		for (int i = to; i < to + count; i++)
+			bases[i] += baseDelta;
+		// cells, which became the gap
+		int gap = Math.min(count, Math.abs(to - from));
+		Arrays.fill(tokens, from < to ? from : from + count - gap, from < to ? from + gap
+				: from + count, null);
+	}
+
+	/**
+	 * Returns token of the cell at the position in the current source
+	 *
+	 * @param cell
+	 *            index of token in the array
+	 * @param cellDelta
+	 *            shift of the cell
+	 */
+	private Token shifted(int cell, int cellDelta) {
+		Token token = tokens[cell];
+		int delta = cellDelta - bases[cell];
+		if (delta == 0)
+			return token;
+		int begin = token.getBegin() + delta;
+		int end = token.getEnd() + delta;
+		if (token.getSymbolId() != -1)
+			return new Token(begin, end, token.getTokenString(), token.getTokenType(),
+					token.getSymbolId());
+		return new Token(begin, end, source, token.getTokenType());
+	}
+
+	/**
+	 * Enlarges the gap, so it can hold the specified number of tokens
+	 */
+	private void grow(int count) {
+		int length = Math.max(tokens.length * 2, size() + count);
+		int tail = tokens.length - gapEnd;
+		tokens = copy(tokens, new Token[length], tail);
+		bases = copy(bases, new int[length], tail);
+		lookaheads = copy(lookaheads, new int[length], tail);
+		gapEnd = length - tail;
+	}
+
+	private <T> T copy(T array, T newArray, int tail) {
+		System.arraycopy(array, 0, newArray, 0, gapStart);
+		System.arraycopy(array, gapEnd, newArray, java.lang.reflect.Array.getLength(newArray)
+				- tail, tail);
+		return newArray;
+	}
+}
@@ -0,0 +1,162 @@
+package lexer;
+
+import token.TokenType;
+
+/**
+ * The {@code TokenMatcher} class separates tokens from the input by running
+ * the automaton. The longest lexeme wins, if lexemes of several types have the
+ * same length, the type which comes first in {@code TokenType} is taken.
+ * Identifiers are classified as keywords by the keyword table.
+ *
+ * @author Ira Korshunova
+ *
+ */
+class TokenMatcher {
+
+	/** All types of tokens indexed by ordinal */
+	private static final TokenType[] TYPES = TokenType.values();
+
+	/** Automaton for all types of tokens */
+	private final Automaton automaton;
+
+	/** Keywords, which are separated as identifiers by the automaton */
+	private final KeywordTable keywords;
+
+	/** Type of the last matched token */
+	private TokenType tokenType;
+
+	/** Ending index of the last matched token, exclusive */
+	private int end;
+
+	/** Index after the last position read by the last matching */
+	private int scanEnd;
+
+	/** Whether the matching needs characters after the limit */
+	private boolean hitLimit;
+
+	/**
+	 * Creates {@code TokenMatcher} object for the automaton
+	 *
+	 * @param automaton
+	 *            compiled automaton
+	 * @param keywords
+	 *            table of keywords
+	 */
+	TokenMatcher(Automaton automaton, KeywordTable keywords) {
+		this.automaton = automaton;
+		this.keywords = keywords;
+	}
+
+	/**
+	 * Matches the token, which starts at the specified index
+	 *
+	 * @param input
+	 *            input source
+	 * @param from
+	 *            the index from which to start the matching
+	 * @return {@code true} if token was found
+	 */
+	boolean match(CharSequence input, int from) {
+		return match(input, from, input.length(), true);
+	}
+
+	/**
+	 * Matches the token, which starts at the specified index, in the part of
+	 * the input before the limit
+	 *
+	 * @param input
+	 *            input source
+	 * @param from
+	 *            the index from which to start the matching
+	 * @param length
+	 *            the limit of available characters
+	 * @param endOfInput
+	 *            whether the input ends at the limit
+	 * @return {@code true} if token was found. The result is not final if
+	 *         {@link #hitLimit()} returns {@code true}
+	 */
+	boolean match(CharSequence input, int from, int length, boolean endOfInput) {
+		int state = Automaton.START;
+		tokenType = null;
+		end = from;
+		hitLimit = false;
+
+		boolean wordBefore = from > 0 && Automaton.isWordCharacter(input.charAt(from - 1));
+		boolean wordFirst = Automaton.isWordCharacter(input.charAt(from));
+		int i = from;
+		for (; i < length; i++) {
+			char c = input.charAt(i);
+			state = automaton.next(state, c);
+			if (state == Automaton.DEAD)
+				break;
+
+			int[] accepted = automaton.accepts(state);
+			if (accepted.length != 0) {
+				boolean wordLast = Automaton.isWordCharacter(c);
+				boolean wordAfter = i + 1 < length
+						&& Automaton.isWordCharacter(input.charAt(i + 1));
+				for (int type : accepted) {
+					if (automaton.hasLeadingBoundary(type) && wordBefore == wordFirst)
+						continue;
+					if (automaton.hasTrailingBoundary(type) && wordLast == wordAfter)
+						continue;
+					tokenType = TYPES[type];
+					end = i + 1;
+					break;
+				}
+			}
+		}
+		scanEnd = i + 1;
+		if (i == length && !endOfInput) {
+			hitLimit = true;
+			return false;
+		}
+
+		if (tokenType == TokenType.Identifier) {
+			TokenType keyword = keywords.lookup(input, from, end);
+			if (keyword != null)
+				tokenType = keyword;
+		}
+		return tokenType != null;
+	}
+
+	/**
+	 * Returns index after the last position, which was read by the last
+	 * matching. The token depends only on the characters before this index.
+	 * Reaching the end of the input counts as reading the position after the
+	 * last character.
+	 *
+	 * @return index after the last read position
+	 */
+	int getScanEnd() {
+		return scanEnd;
+	}
+
+	/**
+	 * Determines if the last matching reached the limit before the input
+	 * ended, so it has to be repeated when more characters are available
+	 *
+	 * @return {@code true} if more characters are needed
+	 */
+	boolean hitLimit() {
+		return hitLimit;
+	}
+
+	/**
+	 * Returns type of the last matched token
+	 *
+	 * @return type of token or {@code null} if nothing was matched
+	 */
+	TokenType getTokenType() {
+		return tokenType;
+	}
+
+	/**
+	 * Returns ending index of the last matched token
+	 *
+	 * @return the ending index, exclusive
+	 */
+	int getEnd() {
+		return end;
+	}
+}
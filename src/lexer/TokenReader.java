@@ -0,0 +1,179 @@
+package lexer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+
+import token.SymbolTable;
+import token.Token;
+import token.TokenSource;
+import token.TokenType;
+import exceptions.AnalyzerException;
+
+/**
+ * The {@code TokenReader} class separates tokens from the character stream.
+ * Characters are read through the buffer of fixed size, which slides over
+ * the input, so only the current token and the rest of the buffer are kept
+ * in memory. The buffer grows only if a single token, such as a long block
+ * comment, doesn't fit in it. Strings of tokens are copied from the buffer,
+ * identifiers are interned in the symbol table of the lexer.
+ *
+ * @author Ira Korshunova
+ *
+ */
+public class TokenReader implements TokenSource, Closeable {
+
+	/** Matcher over the automaton of the lexer */
+	private TokenMatcher matcher;
+
+	/** Table, where identifiers are interned */
+	private SymbolTable symbolTable;
+
+	/** Source of characters */
+	private Reader source;
+
+	/** Buffer with the current part of the input */
+	private char[] buffer;
+
+	/** View of the buffer for the matcher */
+	private CharBuffer window;
+
+	/** Index of the next token in the buffer */
+	private int start;
+
+	/** Number of characters in the buffer */
+	private int limit;
+
+	/** Position of the first character of the buffer in the input */
+	private int offset;
+
+	/** Whether all characters were read from the source */
+	private boolean endOfInput;
+
+	/** Token, which was read by {@code peek} */
+	private Token peeked;
+
+	/**
+	 * Creates {@code TokenReader} object
+	 *
+	 * @param matcher
+	 *            matcher of tokens
+	 * @param symbolTable
+	 *            table, where identifiers are interned
+	 * @param source
+	 *            source of characters
+	 * @param bufferSize
+	 *            initial size of the buffer
+	 */
+	TokenReader(TokenMatcher matcher, SymbolTable symbolTable, Reader source, int bufferSize) {
+		if (bufferSize < 2) {
+			throw new IllegalArgumentException("Buffer size must be at least 2");
+		}
+		this.matcher = matcher;
+		this.symbolTable = symbolTable;
+		this.source = source;
+		buffer = new char[bufferSize];
+		window = CharBuffer.wrap(buffer);
+	}
+
+	/**
+	 * Reads the next token from the input. The token is returned as soon as
+	 * its end and the character after it are read.
+	 *
+	 * @return next token or {@code null} if the input is over
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws AnalyzerException
+	 *             if lexical error exists in the input
+	 */
+	@Override
+	public Token nextToken() throws IOException, AnalyzerException {
+		Token token = peek();
+		peeked = null;
+		return token;
+	}
+
+	@Override
+	public Token peek() throws IOException, AnalyzerException {
+		if (peeked == null)
+			peeked = read();
+		return peeked;
+	}
+
+	private Token read() throws IOException, AnalyzerException {
+		while (start == limit) {
+			if (!fill())
+				return null;
+		}
+
+		while (!matcher.match(window, start, limit, endOfInput)) {
+			if (!matcher.hitLimit()) {
+				int position = offset + start;
+				throw new AnalyzerException("Lexical error at position # " + position, position);
+			}
+			fill();
+		}
+
+		int end = matcher.getEnd();
+		TokenType tokenType = matcher.getTokenType();
+		Token token;
+		if (tokenType == TokenType.Identifier) {
+			int symbol = symbolTable.intern(window, start, end);
+			token = new Token(offset + start, offset + end, symbolTable.getName(symbol),
+					tokenType, symbol);
+		} else {
+			token = new Token(offset + start, offset + end, new String(buffer, start, end
+					- start), tokenType);
+		}
+		start = end;
+		return token;
+	}
+
+	/**
+	 * Moves the current token to the beginning of the buffer and reads more
+	 * characters. The character before the token is kept to check word
+	 * boundaries.
+	 *
+	 * @return {@code false} if the input is over
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	private boolean fill() throws IOException {
+		if (endOfInput)
+			return false;
+
+		int keep = Math.max(0, start - 1);
+		if (keep > 0) {
+			System.arraycopy(buffer, keep, buffer, 0, limit - keep);
+			offset += keep;
+			start -= keep;
+			limit -= keep;
+		}
+		if (limit == buffer.length) {
+			char[] larger = new char[buffer.length * 2];
+			System.arraycopy(buffer, 0, larger, 0, limit);
+			buffer = larger;
+			window = CharBuffer.wrap(buffer);
+		}
+
+		int count = source.read(buffer, limit, buffer.length - limit);
+		if (count == -1) {
+			endOfInput = true;
+		} else {
+			limit += count;
+		}
+		return true;
+	}
+
+	/**
+	 * Closes the source of characters
+	 *
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	@Override
+	public void close() throws IOException {
+		source.close();
+	}
+}
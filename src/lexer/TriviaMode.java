@@ -0,0 +1,22 @@
+package lexer;
+
+/**
+ * The {@code TriviaMode} enumeration represents the ways, in which the lexer
+ * treats auxiliary tokens: comments, whitespaces, tabs and newlines
+ * 
+ * @author Ira Korshunova
+ * 
+ */
+public enum TriviaMode {
+	/** Auxiliary tokens are separated as all other tokens */
+	KEEP,
+
+	/** Auxiliary tokens are scanned, but no objects are created for them */
+	SKIP,
+
+	/**
+	 * Auxiliary tokens are skipped, but their ranges are attached to the
+	 * significant tokens as leading and trailing trivia
+	 */
+	ATTACH
+}
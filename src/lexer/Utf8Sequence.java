@@ -0,0 +1,127 @@
+package lexer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * The {@code Utf8Sequence} class represents bytes of UTF-8 input as sequence
+ * of characters without decoding it. Every byte is one position of the
+ * sequence, so indexes are byte offsets. ASCII bytes are returned as they
+ * are, the leading byte of multibyte character is returned as the decoded
+ * character and the continuation bytes as U+0080. Tokens of the
+ * language consist of ASCII characters only, so the lexer needs nothing more.
+ * The text is decoded by {@link #toString()}.
+ *
+ * @author Ira Korshunova
+ *
+ */
+class Utf8Sequence implements CharSequence {
+
+	/** Charset of the input */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/** Character returned for continuation bytes */
+	private static final char CONTINUATION = '\u0080';
+
+	/** Character returned for malformed input */
+	private static final char REPLACEMENT = '\uFFFD';
+
+	/** Bytes of the input */
+	private final ByteBuffer bytes;
+
+	/** Index of the first byte of this sequence */
+	private final int offset;
+
+	/** Number of bytes in this sequence */
+	private final int length;
+
+	/**
+	 * Creates {@code Utf8Sequence} object over the remaining bytes of the
+	 * buffer
+	 *
+	 * @param bytes
+	 *            bytes of the input
+	 */
+	Utf8Sequence(ByteBuffer bytes) {
+		this(bytes, bytes.position(), bytes.remaining());
+	}
+
+	private Utf8Sequence(ByteBuffer bytes, int offset, int length) {
+		this.bytes = bytes;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= length)
+			throw new IndexOutOfBoundsException("Index: " + index);
+		int b = bytes.get(offset + index);
+		if (b >= 0)
+			return (char) b;
+		return decode(index, b & 0xFF);
+	}
+
+	/**
+	 * Decodes multibyte character
+	 *
+	 * @param index
+	 *            index of the leading byte
+	 * @param b
+	 *            leading byte
+	 * @return decoded character or its high surrogate
+	 */
+	private char decode(int index, int b) {
+		if (b < 0xC0)
+			return CONTINUATION;
+		int codePoint;
+		int count;
+		if (b < 0xE0) {
+			codePoint = b & 0x1F;
+			count = 1;
+		} else if (b < 0xF0) {
+			codePoint = b & 0x0F;
+			count = 2;
+		} else {
+			codePoint = b & 0x07;
+			count = 3;
+		}
+		for (int k = 1; k <= count; k++) {
+			if (index + k >= length)
+				return REPLACEMENT;
+			int next = bytes.get(offset + index + k) & 0xFF;
+			if ((next & 0xC0) != 0x80)
+				return REPLACEMENT;
+			codePoint = codePoint << 6 | next & 0x3F;
+		}
+		if (!Character.isValidCodePoint(codePoint))
+			return REPLACEMENT;
+		return Character.isBmpCodePoint(codePoint) ? (char) codePoint : Character
+				.highSurrogate(codePoint);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || end > length || start > end)
+			throw new IndexOutOfBoundsException("Range: " + start + ", " + end);
+		return new Utf8Sequence(bytes, offset + start, end - start);
+	}
+
+	/**
+	 * Decodes bytes of this sequence
+	 *
+	 * @return decoded text
+	 */
+	@Override
+	public String toString() {
+		ByteBuffer slice = bytes.duplicate();
+		slice.limit(offset + length);
+		slice.position(offset);
+		return UTF_8.decode(slice).toString();
+	}
+}
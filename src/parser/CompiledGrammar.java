@@ -0,0 +1,1216 @@
+package parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import token.TokenType;
+
+/**
+ * The {@code CompiledGrammar} class represents LL(1) grammar together with its
+ * first and follow sets and parsing table. The grammar is analyzed once, when
+ * it's compiled, and can't be changed afterwards, so one object can be shared
+ * by parsers in different threads. Format of the grammar file is described in
+ * {@link Parser}. Compiled grammar can be written in binary form and read
+ * back without the analysis of the grammar.
+ * 
+ * @author Ira Korshunova
+ * 
+ */
+public final class CompiledGrammar {
+
+	/** Marker at the beginning of binary form of compiled grammar */
+	private static final int MAGIC = 0x4C4C3147;
+
+	/** Version of binary form */
+	private static final int VERSION = 5;
+
+	/** Terminal symbol of grammar which represents empty string */
+	private static final Terminal epsilon = Parser.epsilon;
+
+	/** Terminal symbol which represents end of program */
+	private static final Terminal endOfProgram = Parser.endOfProgram;
+
+	/** Column of empty string, which is its index in first sets */
+	private static final int EPSILON = 1;
+
+	/** Names of terminals, which represent tokens of each type */
+	private static final Map<TokenType, String> terminalNames = launchTerminalNames();
+
+	/** Start symbol of the grammar */
+	private final NonTerminal startSymbol;
+
+	/** List of rules in the grammar without alternations */
+	private final List<Rule> rules = new ArrayList<Rule>();
+
+	/** Grammar's alphabet. Contains terminal and nonterminal symbols */
+	private final Set<Symbol> alphabet = new HashSet<Symbol>();
+
+	/** Mapping from string representation of symbol to its object */
+	private final Map<String, Symbol> nameToSymbol = new HashMap<String, Symbol>();
+
+	/** Symbols indexed by their codes plus one */
+	private final Symbol[] symbols;
+
+	/** Numbers of rules indexed by codes of their left sides plus one */
+	private final int[][] rulesByLeftSide;
+
+	/**
+	 * First sets of nonterminals indexed by codes of symbols plus one. The
+	 * terminal is represented by the bit with index of its column in the
+	 * parsing table, so the size of sets depends only on the number of
+	 * terminals. First set of terminal is the terminal itself, so it isn't
+	 * kept.
+	 */
+	private final BitSet[] firstSets;
+
+	/** Follow sets of nonterminals in the same form as first sets */
+	private final BitSet[] followSets;
+
+	/**
+	 * Right sides of rules as codes of symbols. Every right side is preceded
+	 * by its length.
+	 */
+	private final int[] rightSides;
+
+	/** Indexes of right sides of rules in {@code rightSides} */
+	private final int[] ruleOffsets;
+
+	/**
+	 * Parsing table for LL(1) parser. Rows are given to nonterminals and
+	 * columns to terminals. Rows are compressed by displacement: the row
+	 * starts at its offset in the array and may overlap other rows, while
+	 * their entries are placed in different cells. The entry is the number of
+	 * rule plus one.
+	 */
+	private final int[] parsingTable;
+
+	/**
+	 * Codes of nonterminals, which own the cells of {@code parsingTable}, or
+	 * zero for empty cells
+	 */
+	private final int[] tableChecks;
+
+	/**
+	 * Columns of the parsing table indexed by codes of symbols plus one.
+	 * {@code endOfProgram} has column zero, {@code EPSILON} has column one,
+	 * other terminals follow in the order of codes. The entry is {@code -1}
+	 * for nonterminals.
+	 */
+	private final int[] columns;
+
+	/** Codes of terminals indexed by columns of the parsing table */
+	private final int[] terminalCodes;
+
+	/**
+	 * Offsets of the rows of the parsing table indexed by codes of symbols
+	 * plus one. The entry is {@code -1} for terminals.
+	 */
+	private final int[] rowOffsets;
+
+	/** Conflicts, which were found while building the parsing table */
+	private final List<Conflict> conflicts = new ArrayList<Conflict>();
+
+	/**
+	 * Codes of terminals indexed by ordinals of token types. The entry is zero
+	 * if the grammar has no terminal for tokens of the type.
+	 */
+	private final int[] tokenTerminals;
+
+	/**
+	 * Whether the rule has the form {@code X -> Op T X}, where every rule of
+	 * {@code Op} is one terminal, indexed by numbers of rules
+	 */
+	private final boolean[] operatorRules;
+
+	/**
+	 * Reads the grammar rules from file and builds first and follow sets and
+	 * parsing table for them
+	 * 
+	 * @param grammarFile
+	 *            file with grammar rules
+	 * @throws FileNotFoundException
+	 *             if file with the specified pathname does not exist
+	 */
+	private CompiledGrammar(File grammarFile) throws FileNotFoundException {
+		alphabet.add(epsilon);
+		parseRules(grammarFile);
+		startSymbol = rules.isEmpty() ? null : rules.get(0).getLeftSide();
+		symbols = indexSymbols(alphabet);
+		rulesByLeftSide = indexRules(rules, symbols.length);
+		ruleOffsets = new int[rules.size()];
+		rightSides = packRightSides(rules, ruleOffsets);
+		columns = indexColumns(symbols);
+		terminalCodes = invert(columns);
+		firstSets = newSets(symbols.length);
+		followSets = newSets(symbols.length);
+		rowOffsets = indexRows(symbols);
+		tokenTerminals = mapTokenTypes(nameToSymbol);
+		operatorRules = findOperatorRules(rules, rulesByLeftSide);
+		calculateFirst();
+		calculateFollow();
+		int[][] table = buildParsingTable();
+		parsingTable = table[0];
+		tableChecks = table[1];
+	}
+
+	/**
+	 * Compiles the grammar from file
+	 * 
+	 * @param grammarFile
+	 *            file with grammar rules
+	 * @return compiled grammar
+	 * @throws FileNotFoundException
+	 *             if file with the specified pathname does not exist
+	 */
+	public static CompiledGrammar compile(File grammarFile) throws FileNotFoundException {
+		return new CompiledGrammar(grammarFile);
+	}
+
+	/**
+	 * Reads compiled grammar, which was written by {@link #write(OutputStream)}
+	 * 
+	 * @param in
+	 *            stream with binary form of grammar
+	 * @return compiled grammar
+	 * @throws IOException
+	 *             if an I/O error occurs or the stream doesn't contain compiled
+	 *             grammar
+	 */
+	public static CompiledGrammar read(InputStream in) throws IOException {
+		return new CompiledGrammar(new DataInputStream(new BufferedInputStream(in)));
+	}
+
+	/**
+	 * Reads compiled grammar from file, which was created by
+	 * {@code GrammarCompiler}
+	 * 
+	 * @param file
+	 *            file with binary form of grammar
+	 * @return compiled grammar
+	 * @throws IOException
+	 *             if an I/O error occurs or the file doesn't contain compiled
+	 *             grammar
+	 */
+	public static CompiledGrammar load(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			return read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads symbols, rules, first and follow sets, parsing table and its
+	 * conflicts in binary form. Every code and count is checked before it's
+	 * used, and the checksum of the whole form is compared at the end, so the
+	 * damaged stream is rejected instead of being read as another grammar.
+	 * 
+	 * @param stream
+	 *            stream with binary form of grammar
+	 * @throws IOException
+	 *             if an I/O error occurs or the stream doesn't contain compiled
+	 *             grammar
+	 */
+	private CompiledGrammar(DataInputStream stream) throws IOException {
+		if (stream.readInt() != MAGIC) {
+			throw new IOException("Stream doesn't contain compiled grammar");
+		}
+		if (stream.readInt() != VERSION) {
+			throw new IOException("Unsupported version of compiled grammar");
+		}
+		CheckedInputStream checked = new CheckedInputStream(stream, new CRC32());
+		DataInputStream in = new DataInputStream(checked);
+
+		Map<Integer, Symbol> codeToSymbol = new HashMap<Integer, Symbol>();
+		codeToSymbol.put(epsilon.getCode(), epsilon);
+		codeToSymbol.put(endOfProgram.getCode(), endOfProgram);
+		nameToSymbol.put(epsilon.getName(), epsilon);
+		alphabet.add(epsilon);
+		int symbolCount = readCount(in, Integer.MAX_VALUE - 2);
+		for (int i = 0; i < symbolCount; i++) {
+			int code = in.readInt();
+			boolean terminal = in.readBoolean();
+			String name = in.readUTF();
+			// symbols are written in the order of their codes
+			if (code != i + 1) {
+				throw new IOException("Illegal symbol code in compiled grammar: " + code);
+			}
+			if (nameToSymbol.containsKey(name)) {
+				throw new IOException("Duplicate symbol in compiled grammar: " + name);
+			}
+			Symbol s = terminal ? new Terminal(code, name) : new NonTerminal(code, name);
+			codeToSymbol.put(code, s);
+			nameToSymbol.put(name, s);
+			alphabet.add(s);
+		}
+
+		int ruleCount = readCount(in, Integer.MAX_VALUE);
+		for (int i = 0; i < ruleCount; i++) {
+			NonTerminal leftSide = readNonTerminal(in, codeToSymbol);
+			// the length isn't limited by the number of symbols, so the
+			// array isn't allocated before its symbols are read
+			int length = readCount(in, Integer.MAX_VALUE);
+			List<Symbol> rightSide = new ArrayList<Symbol>();
+			for (int j = 0; j < length; j++) {
+				Symbol s = readSymbol(in, codeToSymbol);
+				if (s == endOfProgram) {
+					throw new IOException("End of program in rule of compiled grammar");
+				}
+				rightSide.add(s);
+			}
+			rules.add(new Rule(i, leftSide, rightSide.toArray(new Symbol[rightSide.size()])));
+		}
+		startSymbol = rules.isEmpty() ? null : rules.get(0).getLeftSide();
+		symbols = indexSymbols(alphabet);
+		rulesByLeftSide = indexRules(rules, symbols.length);
+		ruleOffsets = new int[rules.size()];
+		rightSides = packRightSides(rules, ruleOffsets);
+		columns = indexColumns(symbols);
+		terminalCodes = invert(columns);
+		firstSets = newSets(symbols.length);
+		followSets = newSets(symbols.length);
+		rowOffsets = indexRows(symbols);
+		tokenTerminals = mapTokenTypes(nameToSymbol);
+		operatorRules = findOperatorRules(rules, rulesByLeftSide);
+
+		readSets(in, codeToSymbol, firstSets);
+		readSets(in, codeToSymbol, followSets);
+
+		long cellCount = (long) symbols.length * terminalCodes.length;
+		int entryCount = readCount(in, Math.min(cellCount, Integer.MAX_VALUE));
+		int[] leftSides = new int[entryCount];
+		int[] indexes = new int[entryCount];
+		int[] entryColumns = new int[entryCount];
+		int[] entries = new int[entryCount];
+		for (int i = 0; i < entryCount; i++) {
+			NonTerminal leftSide = readNonTerminal(in, codeToSymbol);
+			Terminal input = readTerminal(in, codeToSymbol);
+			leftSides[i] = leftSide.getCode() + 1;
+			indexes[i] = i;
+			entryColumns[i] = columns[input.getCode() + 1];
+			entries[i] = readRuleNumber(in) + 1;
+		}
+		int[][] rowColumns = group(leftSides, indexes, entryCount, symbols.length);
+		int[][] rowEntries = new int[symbols.length][];
+		for (int i = 0; i < symbols.length; i++) {
+			rowEntries[i] = new int[rowColumns[i].length];
+			for (int j = 0; j < rowColumns[i].length; j++) {
+				rowEntries[i][j] = entries[rowColumns[i][j]];
+				rowColumns[i][j] = entryColumns[rowColumns[i][j]];
+			}
+		}
+		int[][] table = packRows(rowColumns, rowEntries);
+		parsingTable = table[0];
+		tableChecks = table[1];
+
+		int conflictCount = readCount(in, Math.min(cellCount * rules.size(), Integer.MAX_VALUE));
+		for (int i = 0; i < conflictCount; i++) {
+			NonTerminal leftSide = readNonTerminal(in, codeToSymbol);
+			Terminal input = readTerminal(in, codeToSymbol);
+			Rule overwritten = rules.get(readRuleNumber(in));
+			conflicts.add(new Conflict(leftSide, input, overwritten, rules.get(readRuleNumber(in))));
+		}
+
+		int checksum = (int) checked.getChecksum().getValue();
+		if (stream.readInt() != checksum) {
+			throw new IOException("Checksum of compiled grammar doesn't match");
+		}
+	}
+
+	/**
+	 * Writes symbols, rules, first and follow sets, parsing table and its
+	 * conflicts in binary form, which is read by {@link #read(InputStream)}
+	 * 
+	 * @param out
+	 *            output stream
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public void write(OutputStream out) throws IOException {
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(out));
+		output.writeInt(MAGIC);
+		output.writeInt(VERSION);
+		CheckedOutputStream checked = new CheckedOutputStream(output, new CRC32());
+		DataOutputStream data = new DataOutputStream(checked);
+
+		Map<Integer, Symbol> sortedSymbols = new TreeMap<Integer, Symbol>();
+		for (Symbol s : alphabet) {
+			if (s != epsilon)
+				sortedSymbols.put(s.getCode(), s);
+		}
+		data.writeInt(sortedSymbols.size());
+		for (Symbol s : sortedSymbols.values()) {
+			data.writeInt(s.getCode());
+			data.writeBoolean(s.isTerminal());
+			data.writeUTF(s.getName());
+		}
+
+		data.writeInt(rules.size());
+		for (Rule r : rules) {
+			data.writeInt(r.getLeftSide().getCode());
+			data.writeInt(r.getRightSide().length);
+			for (Symbol s : r.getRightSide())
+				data.writeInt(s.getCode());
+		}
+
+		writeSets(data, firstSets);
+		writeSets(data, followSets);
+
+		int entryCount = 0;
+		for (int check : tableChecks) {
+			if (check != 0)
+				entryCount++;
+		}
+		data.writeInt(entryCount);
+		for (int i = 0; i < tableChecks.length; i++) {
+			int leftSide = tableChecks[i];
+			if (leftSide != 0) {
+				data.writeInt(leftSide);
+				data.writeInt(terminalCodes[i - rowOffsets[leftSide + 1]]);
+				data.writeInt(parsingTable[i] - 1);
+			}
+		}
+
+		data.writeInt(conflicts.size());
+		for (Conflict c : conflicts) {
+			data.writeInt(c.getNonTerminal().getCode());
+			data.writeInt(c.getTerminal().getCode());
+			data.writeInt(c.getOverwrittenRule().getRuleNumber());
+			data.writeInt(c.getRule().getRuleNumber());
+		}
+		output.writeInt((int) checked.getChecksum().getValue());
+		output.flush();
+	}
+
+	private void writeSets(DataOutputStream data, BitSet[] sets) throws IOException {
+		int count = 0;
+		for (BitSet set : sets) {
+			if (!set.isEmpty())
+				count++;
+		}
+		data.writeInt(count);
+		for (int i = 0; i < sets.length; i++) {
+			if (sets[i].isEmpty())
+				continue;
+			data.writeInt(i - 1);
+			data.writeInt(sets[i].cardinality());
+			for (int t = sets[i].nextSetBit(0); t >= 0; t = sets[i].nextSetBit(t + 1))
+				data.writeInt(terminalCodes[t]);
+		}
+	}
+
+	private void readSets(DataInputStream in, Map<Integer, Symbol> codeToSymbol, BitSet[] sets)
+			throws IOException {
+		int count = readCount(in, sets.length);
+		for (int i = 0; i < count; i++) {
+			Symbol s = readSymbol(in, codeToSymbol);
+			int size = readCount(in, terminalCodes.length);
+			for (int j = 0; j < size; j++)
+				sets[s.getCode() + 1].set(columns[readTerminal(in, codeToSymbol).getCode() + 1]);
+		}
+	}
+
+	private static Symbol readSymbol(DataInputStream in, Map<Integer, Symbol> codeToSymbol)
+			throws IOException {
+		int code = in.readInt();
+		Symbol s = codeToSymbol.get(code);
+		if (s == null) {
+			throw new IOException("Unknown symbol in compiled grammar: " + code);
+		}
+		return s;
+	}
+
+	private static NonTerminal readNonTerminal(DataInputStream in,
+			Map<Integer, Symbol> codeToSymbol) throws IOException {
+		Symbol s = readSymbol(in, codeToSymbol);
+		if (!s.isNonTerminal()) {
+			throw new IOException("Terminal instead of nonterminal in compiled grammar: "
+					+ s.getCode());
+		}
+		return (NonTerminal) s;
+	}
+
+	private static Terminal readTerminal(DataInputStream in, Map<Integer, Symbol> codeToSymbol)
+			throws IOException {
+		Symbol s = readSymbol(in, codeToSymbol);
+		if (!s.isTerminal()) {
+			throw new IOException("Nonterminal instead of terminal in compiled grammar: "
+					+ s.getCode());
+		}
+		return (Terminal) s;
+	}
+
+	/**
+	 * Reads number of the following elements
+	 * 
+	 * @param limit
+	 *            the greatest legal number
+	 */
+	private static int readCount(DataInputStream in, long limit) throws IOException {
+		int count = in.readInt();
+		if (count < 0 || count > limit) {
+			throw new IOException("Illegal count in compiled grammar: " + count);
+		}
+		return count;
+	}
+
+	private int readRuleNumber(DataInputStream in) throws IOException {
+		int ruleNumber = in.readInt();
+		if (ruleNumber < 0 || ruleNumber >= rules.size()) {
+			throw new IOException("Illegal rule number in compiled grammar: " + ruleNumber);
+		}
+		return ruleNumber;
+	}
+
+	/**
+	 * Returns the start symbol, which is the left side of the first rule
+	 * 
+	 * @return nonterminal or {@code null} if the grammar has no rules
+	 */
+	public NonTerminal getStartSymbol() {
+		return startSymbol;
+	}
+
+	/**
+	 * Returns rules of the grammar in the order of their numbers
+	 * 
+	 * @return unmodifiable list of rules
+	 */
+	public List<Rule> getRules() {
+		return Collections.unmodifiableList(rules);
+	}
+
+	/**
+	 * Returns symbol with the specified name
+	 * 
+	 * @param name
+	 *            designation of symbol in the grammar
+	 * @return symbol or {@code null} if the grammar doesn't contain it
+	 */
+	public Symbol getSymbol(String name) {
+		return nameToSymbol.get(name);
+	}
+
+	/**
+	 * Returns first set of symbol
+	 * 
+	 * @param s
+	 *            terminal or nonterminal symbol of grammar
+	 * @return unmodifiable first set or {@code null} if the grammar doesn't
+	 *         contain the symbol
+	 */
+	public Set<Terminal> getFirstSet(Symbol s) {
+		int index = s.getCode() + 1;
+		if (s.isTerminal() && index >= 0 && index < symbols.length && s.equals(symbols[index]))
+			return Collections.singleton((Terminal) s);
+		return toSet(s, firstSets);
+	}
+
+	/**
+	 * Returns follow set of nonterminal
+	 * 
+	 * @param s
+	 *            nonterminal symbol of grammar
+	 * @return unmodifiable follow set or {@code null} if the grammar doesn't
+	 *         contain the symbol
+	 */
+	public Set<Terminal> getFollowSet(NonTerminal s) {
+		return toSet(s, followSets);
+	}
+
+	private Set<Terminal> toSet(Symbol s, BitSet[] sets) {
+		int index = s.getCode() + 1;
+		if (index < 0 || index >= symbols.length || !s.equals(symbols[index]))
+			return null;
+		Set<Terminal> set = new LinkedHashSet<Terminal>();
+		for (int t = sets[index].nextSetBit(0); t >= 0; t = sets[index].nextSetBit(t + 1))
+			set.add((Terminal) symbols[terminalCodes[t] + 1]);
+		return Collections.unmodifiableSet(set);
+	}
+
+	/**
+	 * Returns conflicts of the parsing table. The grammar is LL(1) if there
+	 * are no conflicts. Otherwise the table contains the rule, which comes
+	 * last in the grammar.
+	 * 
+	 * @return unmodifiable list of conflicts
+	 */
+	public List<Conflict> getConflicts() {
+		return Collections.unmodifiableList(conflicts);
+	}
+
+	/**
+	 * Returns the rule, which is chosen by parsing table
+	 * 
+	 * @param leftSide
+	 *            code of nonterminal on the top of the stack
+	 * @param input
+	 *            code of current terminal of the input
+	 * @return number of rule or {@code -1} if there is no rule
+	 */
+	int getTableEntry(int leftSide, int input) {
+		int entry = rowOffsets[leftSide + 1] + columns[input + 1];
+		return tableChecks[entry] == leftSide ? parsingTable[entry] - 1 : -1;
+	}
+
+	/**
+	 * Returns the rule with specified number
+	 * 
+	 * @param ruleNumber
+	 *            number of rule
+	 * @return rule of the grammar
+	 */
+	Rule getRule(int ruleNumber) {
+		return rules.get(ruleNumber);
+	}
+
+	/**
+	 * Returns index of right side of the rule in {@link #getRightSides()}
+	 * 
+	 * @param ruleNumber
+	 *            number of rule
+	 * @return index of the length of right side
+	 */
+	int getRightSide(int ruleNumber) {
+		return ruleOffsets[ruleNumber];
+	}
+
+	/**
+	 * Returns right sides of all rules as codes of symbols. Every right side
+	 * is preceded by its length. The array must not be modified.
+	 * 
+	 * @return packed right sides
+	 */
+	int[] getRightSides() {
+		return rightSides;
+	}
+
+	/**
+	 * Returns symbol with the specified code
+	 * 
+	 * @param code
+	 *            code of symbol
+	 * @return symbol or {@code null} if the grammar doesn't contain it
+	 */
+	Symbol getSymbol(int code) {
+		return symbols[code + 1];
+	}
+
+	/**
+	 * Returns number of codes of symbols. Codes are placed in range from
+	 * {@code -1} to the number of codes minus two.
+	 * 
+	 * @return number of codes including {@code endOfProgram}
+	 */
+	int getSymbolCount() {
+		return symbols.length;
+	}
+
+	/**
+	 * Checks whether the terminal belongs to the follow set of nonterminal
+	 * 
+	 * @param nonTerminal
+	 *            code of nonterminal
+	 * @param terminal
+	 *            code of terminal
+	 * @return {@code true} if the terminal can follow the nonterminal
+	 */
+	boolean isInFollow(int nonTerminal, int terminal) {
+		return followSets[nonTerminal + 1].get(columns[terminal + 1]);
+	}
+
+	/**
+	 * Checks whether the rule continues chain of operators, that is it has the
+	 * form {@code X -> Op T X}, where every rule of {@code Op} is one terminal,
+	 * as {@code ExprOp -> ArithmOp Term ExprOp}
+	 * 
+	 * @param ruleNumber
+	 *            number of rule
+	 * @return {@code true} if the rule continues chain of operators
+	 */
+	boolean isOperatorRule(int ruleNumber) {
+		return operatorRules[ruleNumber];
+	}
+
+	/**
+	 * Checks whether the symbol with the specified code is terminal
+	 * 
+	 * @param code
+	 *            code of symbol, which belongs to the grammar
+	 * @return {@code true} if the symbol is terminal
+	 */
+	boolean isTerminal(int code) {
+		return symbols[code + 1].isTerminal();
+	}
+
+	/**
+	 * Returns terminal, which represents tokens of the specified type
+	 * 
+	 * @param tokenType
+	 *            type of token
+	 * @return code of terminal or zero if the grammar has no terminal for
+	 *         tokens of this type
+	 */
+	int getTerminalCode(TokenType tokenType) {
+		return tokenTerminals[tokenType.ordinal()];
+	}
+
+	private static Symbol[] indexSymbols(Set<Symbol> alphabet) {
+		int maxCode = 0;
+		for (Symbol s : alphabet)
+			maxCode = Math.max(maxCode, s.getCode());
+		Symbol[] symbols = new Symbol[maxCode + 2];
+		symbols[endOfProgram.getCode() + 1] = endOfProgram;
+		for (Symbol s : alphabet)
+			symbols[s.getCode() + 1] = s;
+		return symbols;
+	}
+
+	private static int[] indexColumns(Symbol[] symbols) {
+		int[] columns = new int[symbols.length];
+		Arrays.fill(columns, -1);
+		columns[endOfProgram.getCode() + 1] = 0;
+		columns[epsilon.getCode() + 1] = 1;
+		int column = 2;
+		for (int i = 0; i < symbols.length; i++) {
+			if (symbols[i] != null && symbols[i].isTerminal() && columns[i] == -1)
+				columns[i] = column++;
+		}
+		return columns;
+	}
+
+	/**
+	 * Inverts the index of columns
+	 * 
+	 * @param columns
+	 *            columns indexed by codes of symbols plus one
+	 * @return codes of terminals indexed by columns
+	 */
+	private static int[] invert(int[] columns) {
+		int count = 0;
+		for (int column : columns)
+			count = Math.max(count, column + 1);
+		int[] codes = new int[count];
+		for (int i = 0; i < columns.length; i++) {
+			if (columns[i] != -1)
+				codes[columns[i]] = i - 1;
+		}
+		return codes;
+	}
+
+	private static int[] indexRows(Symbol[] symbols) {
+		int[] rowOffsets = new int[symbols.length];
+		Arrays.fill(rowOffsets, -1);
+		for (int i = 0; i < symbols.length; i++) {
+			if (symbols[i] != null && symbols[i].isNonTerminal())
+				rowOffsets[i] = 0;
+		}
+		return rowOffsets;
+	}
+
+	/**
+	 * Places rows of the parsing table into one array. Every row gets the
+	 * smallest offset, at which its entries fall on empty cells, and the
+	 * longest rows are placed first. The array is long enough to look up any
+	 * column of any row.
+	 * 
+	 * @param rowColumns
+	 *            columns of entries indexed by codes of nonterminals plus one
+	 * @param rowEntries
+	 *            entries of the table in the same order as columns
+	 * @return entries and checks of the table
+	 */
+	private int[][] packRows(int[][] rowColumns, int[][] rowEntries) {
+		int columnCount = terminalCodes.length;
+		int[] lengths = new int[rowColumns.length];
+		int[] rows = new int[rowColumns.length];
+		for (int i = 0; i < rowColumns.length; i++) {
+			lengths[i] = columnCount - rowColumns[i].length;
+			rows[i] = i;
+		}
+		int[][] byLength = group(lengths, rows, rows.length, columnCount + 1);
+
+		int[] entries = new int[columnCount * 2];
+		int[] checks = new int[entries.length];
+		int size = columnCount;
+		int firstFree = 0;
+		for (int[] group : byLength) {
+			for (int row : group) {
+				int[] rowColumn = rowColumns[row];
+				if (rowColumn.length == 0)
+					continue;
+				while (firstFree < checks.length && checks[firstFree] != 0)
+					firstFree++;
+				int offset = Math.max(0, firstFree - rowColumn[0]);
+				for (int j = 0; j < rowColumn.length; j++) {
+					int cell = offset + rowColumn[j];
+					if (cell < checks.length && checks[cell] != 0) {
+						offset++;
+						j = -1;
+					}
+				}
+				if (offset + columnCount > entries.length) {
+					int length = Math.max(entries.length * 2, offset + columnCount);
+					entries = Arrays.copyOf(entries, length);
+					checks = Arrays.copyOf(checks, length);
+				}
+				for (int j = 0; j < rowColumn.length; j++) {
+					entries[offset + rowColumn[j]] = rowEntries[row][j];
+					checks[offset + rowColumn[j]] = row - 1;
+				}
+				rowOffsets[row] = offset;
+				size = Math.max(size, offset + columnCount);
+			}
+		}
+		return new int[][] { Arrays.copyOf(entries, size), Arrays.copyOf(checks, size) };
+	}
+
+	private static int[][] indexRules(List<Rule> rules, int symbolCount) {
+		int[] leftSides = new int[rules.size()];
+		int[] numbers = new int[rules.size()];
+		for (Rule r : rules) {
+			leftSides[r.getRuleNumber()] = r.getLeftSide().getCode() + 1;
+			numbers[r.getRuleNumber()] = r.getRuleNumber();
+		}
+		return group(leftSides, numbers, rules.size(), symbolCount);
+	}
+
+	private static boolean[] findOperatorRules(List<Rule> rules, int[][] rulesByLeftSide) {
+		boolean[] operatorRules = new boolean[rules.size()];
+		for (Rule r : rules) {
+			Symbol[] rightSide = r.getRightSide();
+			if (rightSide.length != 3 || !rightSide[2].equals(r.getLeftSide())
+					|| !rightSide[0].isNonTerminal() || rightSide[1] == epsilon)
+				continue;
+			int[] operators = rulesByLeftSide[rightSide[0].getCode() + 1];
+			boolean operator = operators.length > 0;
+			for (int rule : operators) {
+				Symbol[] op = rules.get(rule).getRightSide();
+				if (op.length != 1 || !op[0].isTerminal() || op[0] == epsilon)
+					operator = false;
+			}
+			operatorRules[r.getRuleNumber()] = operator;
+		}
+		return operatorRules;
+	}
+
+	private static int[] packRightSides(List<Rule> rules, int[] ruleOffsets) {
+		int size = 0;
+		for (Rule r : rules)
+			size += r.getRightSide().length + 1;
+		int[] rightSides = new int[size];
+		int offset = 0;
+		for (Rule r : rules) {
+			ruleOffsets[r.getRuleNumber()] = offset;
+			rightSides[offset++] = r.getRightSide().length;
+			for (Symbol s : r.getRightSide())
+				rightSides[offset++] = s.getCode();
+		}
+		return rightSides;
+	}
+
+	private static BitSet[] newSets(int symbolCount) {
+		// sets grow up to their last terminal, so sparse sets stay small
+		BitSet[] sets = new BitSet[symbolCount];
+		for (int i = 0; i < symbolCount; i++)
+			sets[i] = new BitSet();
+		return sets;
+	}
+
+	/**
+	 * Groups values by keys
+	 * 
+	 * @param keys
+	 *            keys in range from zero to {@code keyCount}
+	 * @param values
+	 *            values of the keys
+	 * @param count
+	 *            number of pairs
+	 * @param keyCount
+	 *            number of different keys
+	 * @return values indexed by keys in the order of pairs
+	 */
+	private static int[][] group(int[] keys, int[] values, int count, int keyCount) {
+		int[] sizes = new int[keyCount];
+		for (int i = 0; i < count; i++)
+			sizes[keys[i]]++;
+		int[][] groups = new int[keyCount][];
+		for (int key = 0; key < keyCount; key++)
+			groups[key] = new int[sizes[key]];
+		Arrays.fill(sizes, 0);
+		for (int i = 0; i < count; i++)
+			groups[keys[i]][sizes[keys[i]]++] = values[i];
+		return groups;
+	}
+
+	/**
+	 * Adds first set of the chain of symbols to the set. The chain is the end
+	 * of right side of rule: <i>a</i> is added if for some i <i>a</i> is in
+	 * FIRST(Yi), and Y1, ... , Yi-1 -> EPSILON. EPSILON itself isn't added.
+	 * 
+	 * @param set
+	 *            set, which is extended
+	 * @param rightSide
+	 *            index of right side in {@code rightSides}
+	 * @param from
+	 *            index of the first symbol of the chain in the right side
+	 * @return {@code true} if EPSILON is in FIRST(Yj) for all symbols of the
+	 *         chain
+	 */
+	private boolean addFirst(BitSet set, int rightSide, int from) {
+		int end = rightSide + 1 + rightSides[rightSide];
+		boolean hasEpsilon = set.get(EPSILON);
+		for (int i = rightSide + 1 + from; i < end; i++) {
+			int symbol = rightSides[i] + 1;
+			if (symbols[symbol].isTerminal()) {
+				if (columns[symbol] == EPSILON)
+					continue;
+				set.set(columns[symbol]);
+				return false;
+			}
+			BitSet first = firstSets[symbol];
+			set.or(first);
+			if (!hasEpsilon)
+				set.clear(EPSILON);
+			if (!first.get(EPSILON))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Calculates first sets of all symbols by the next rules: <blockquote>
+	 * 
+	 * <pre>
+	 * 1. If X is terminal, then FIRST(X) is {X}.
+	 * 2. If X is nonterminal and X -> Y1 Y2 ... Yk is a production, 
+	 * then place <i>a</i> (terminal) in FIRST(X) if for some i <i>a</i> is in FIRST(Yi), and Y1, ... ,Yi-1 -> EPSILON. 
+	 * If EPSILON is in FIRST(Yj) for all j = 1, 2, ... , k, then add EPSILON to FIRST(X).
+	 * </pre>
+	 * 
+	 * </blockquote> Nonterminals are kept in the worklist. When first set of
+	 * nonterminal grows, the left sides of rules, which contain it in the
+	 * right side, are put in the worklist again.
+	 */
+	private void calculateFirst() {
+		int size = 0;
+		for (Rule r : rules)
+			size += r.getRightSide().length;
+		int[] keys = new int[size];
+		int[] values = new int[size];
+		int count = 0;
+		for (Rule r : rules) {
+			for (Symbol s : r.getRightSide()) {
+				keys[count] = s.getCode() + 1;
+				values[count++] = r.getLeftSide().getCode() + 1;
+			}
+		}
+		int[][] dependents = group(keys, values, count, symbols.length);
+
+		Worklist worklist = new Worklist(symbols.length);
+		for (int i = 0; i < symbols.length; i++) {
+			if (symbols[i] != null && symbols[i].isNonTerminal())
+				worklist.add(i);
+		}
+		while (!worklist.isEmpty()) {
+			int nonTerminal = worklist.poll();
+			BitSet first = firstSets[nonTerminal];
+			int before = first.cardinality();
+			for (int rule : rulesByLeftSide[nonTerminal]) {
+				if (addFirst(first, ruleOffsets[rule], 0))
+					first.set(EPSILON);
+			}
+			if (first.cardinality() != before) {
+				for (int dependent : dependents[nonTerminal])
+					worklist.add(dependent);
+			}
+		}
+	}
+
+	/**
+	 * Calculates follow sets of all nonterminals. If A -> <i>a</i>B<i>b</i>
+	 * is a production, FIRST(<i>b</i>) without EPSILON is placed in FOLLOW(B)
+	 * and, if <i>b</i> -> EPSILON, FOLLOW(A) is placed in FOLLOW(B). The
+	 * second rule is applied by the worklist over the nonterminals.
+	 */
+	private void calculateFollow() {
+		if (startSymbol != null)
+			followSets[startSymbol.getCode() + 1].set(columns[endOfProgram.getCode() + 1]);
+
+		int size = 0;
+		for (Rule r : rules)
+			size += r.getRightSide().length;
+		int[] keys = new int[size];
+		int[] values = new int[size];
+		int count = 0;
+		for (Rule r : rules) {
+			int rightSide = ruleOffsets[r.getRuleNumber()];
+			int leftSide = r.getLeftSide().getCode() + 1;
+			for (int i = 0; i < rightSides[rightSide]; i++) {
+				int s = rightSides[rightSide + 1 + i] + 1;
+				if (symbols[s].isNonTerminal() && addFirst(followSets[s], rightSide, i + 1)
+						&& s != leftSide) {
+					keys[count] = leftSide;
+					values[count++] = s;
+				}
+			}
+		}
+		int[][] dependents = group(keys, values, count, symbols.length);
+
+		Worklist worklist = new Worklist(symbols.length);
+		for (int i = 0; i < symbols.length; i++) {
+			if (symbols[i] != null && symbols[i].isNonTerminal())
+				worklist.add(i);
+		}
+		while (!worklist.isEmpty()) {
+			int nonTerminal = worklist.poll();
+			for (int dependent : dependents[nonTerminal]) {
+				BitSet follow = followSets[dependent];
+				int before = follow.cardinality();
+				follow.or(followSets[nonTerminal]);
+				if (follow.cardinality() != before)
+					worklist.add(dependent);
+			}
+		}
+	}
+
+	/**
+	 * Automatically builds LL(1) parsing table by using follow and first set.
+	 * If the entry of the table already contains another rule, the conflict
+	 * is saved. Rows are built one at a time and packed by
+	 * {@link #packRows(int[][], int[][])}, so the memory depends on the number
+	 * of entries rather than on the size of the whole table.
+	 * 
+	 * @return entries and checks of the table
+	 */
+	private int[][] buildParsingTable() {
+		int[] row = new int[terminalCodes.length];
+		BitSet used = new BitSet(terminalCodes.length);
+		BitSet lookahead = new BitSet(terminalCodes.length);
+		int[][] rowColumns = new int[symbols.length][];
+		int[][] rowEntries = new int[symbols.length][];
+		for (int nonTerminal = 0; nonTerminal < symbols.length; nonTerminal++) {
+			used.clear();
+			for (int rule : rulesByLeftSide[nonTerminal]) {
+				Rule r = rules.get(rule);
+				lookahead.clear();
+				if (addFirst(lookahead, ruleOffsets[rule], 0))
+					lookahead.or(followSets[nonTerminal]);
+
+				for (int t = lookahead.nextSetBit(0); t >= 0; t = lookahead.nextSetBit(t + 1)) {
+					int previous = row[t] - 1;
+					if (previous != -1 && previous != rule) {
+						conflicts.add(new Conflict(r.getLeftSide(),
+								(Terminal) symbols[terminalCodes[t] + 1], rules.get(previous), r));
+					}
+					row[t] = rule + 1;
+				}
+				used.or(lookahead);
+			}
+			rowColumns[nonTerminal] = new int[used.cardinality()];
+			rowEntries[nonTerminal] = new int[rowColumns[nonTerminal].length];
+			int j = 0;
+			for (int t = used.nextSetBit(0); t >= 0; t = used.nextSetBit(t + 1)) {
+				rowColumns[nonTerminal][j] = t;
+				rowEntries[nonTerminal][j++] = row[t];
+				row[t] = 0;
+			}
+		}
+		// conflicts are reported in the order of rules, as they are found
+		// in the grammar
+		Collections.sort(conflicts, new Comparator<Conflict>() {
+			@Override
+			public int compare(Conflict c1, Conflict c2) {
+				int r1 = c1.getRule().getRuleNumber();
+				int r2 = c2.getRule().getRuleNumber();
+				if (r1 != r2)
+					return r1 < r2 ? -1 : 1;
+				int t1 = columns[c1.getTerminal().getCode() + 1];
+				int t2 = columns[c2.getTerminal().getCode() + 1];
+				return t1 < t2 ? -1 : (t1 == t2 ? 0 : 1);
+			}
+		});
+		return packRows(rowColumns, rowEntries);
+	}
+
+	/**
+	 * Constructs grammar rules from file
+	 * 
+	 * @param grammarFile
+	 *            file with grammar rules
+	 * @throws FileNotFoundException
+	 *             if file with the specified pathname does not exist
+	 */
+	private void parseRules(File grammarFile) throws FileNotFoundException {
+		nameToSymbol.put("EPSILON", epsilon);
+
+		Scanner data = new Scanner(grammarFile);
+		int code = 1;
+		int ruleNumber = 0;
+		while (data.hasNext()) {
+			StringTokenizer t = new StringTokenizer(data.nextLine());
+			String symbolName = t.nextToken();
+			if (!nameToSymbol.containsKey(symbolName)) {
+				Symbol s = new NonTerminal(code, symbolName);
+				nameToSymbol.put(symbolName, s);
+				alphabet.add(s);
+				code++;
+			}
+			t.nextToken();// ->
+
+			NonTerminal leftSide = (NonTerminal) nameToSymbol.get(symbolName);
+			while (t.hasMoreTokens()) {
+				List<Symbol> rightSide = new ArrayList<Symbol>();
+				do {
+					symbolName = t.nextToken();
+					if (!symbolName.equals("|")) {
+						if (!nameToSymbol.containsKey(symbolName)) {
+							Symbol s;
+							if (Character.isUpperCase(symbolName.charAt(0)))
+								s = new NonTerminal(code++, symbolName);
+							else
+								s = new Terminal(code++, symbolName);
+							nameToSymbol.put(symbolName, s);
+							alphabet.add(s);
+						}
+						rightSide.add(nameToSymbol.get(symbolName));
+					}
+				} while (!symbolName.equals("|") && t.hasMoreTokens());
+				rules.add(new Rule(ruleNumber++, leftSide, rightSide.toArray(new Symbol[] {})));
+			}
+		}
+	}
+
+	/**
+	 * Maps types of tokens to codes of terminals with the corresponding
+	 * names, so tokens are converted to terminals without their strings
+	 * 
+	 * @param nameToSymbol
+	 *            symbols of the grammar by their names
+	 * @return codes of terminals indexed by ordinals of token types
+	 */
+	private static int[] mapTokenTypes(Map<String, Symbol> nameToSymbol) {
+		int[] tokenTerminals = new int[TokenType.values().length];
+		for (Map.Entry<TokenType, String> entry : terminalNames.entrySet()) {
+			Symbol s = nameToSymbol.get(entry.getValue());
+			if (s != null && s.isTerminal())
+				tokenTerminals[entry.getKey().ordinal()] = s.getCode();
+		}
+		return tokenTerminals;
+	}
+
+	/**
+	 * Creates map from token types to names of terminals. Identifiers and
+	 * constants are represented by one terminal, other tokens by terminals
+	 * with their strings.
+	 * 
+	 * @return names of terminals
+	 */
+	private static Map<TokenType, String> launchTerminalNames() {
+		Map<TokenType, String> names = new EnumMap<TokenType, String>(TokenType.class);
+		names.put(TokenType.Identifier, "id");
+		names.put(TokenType.IntConstant, "intConst");
+		names.put(TokenType.DoubleConstant, "doubleConst");
+		names.put(TokenType.OpenBrace, "(");
+		names.put(TokenType.CloseBrace, ")");
+		names.put(TokenType.OpeningCurlyBrace, "{");
+		names.put(TokenType.ClosingCurlyBrace, "}");
+		names.put(TokenType.Semicolon, ";");
+		names.put(TokenType.Comma, ",");
+		names.put(TokenType.Point, ".");
+		names.put(TokenType.Plus, "+");
+		names.put(TokenType.Minus, "-");
+		names.put(TokenType.Multiply, "*");
+		names.put(TokenType.Divide, "/");
+		names.put(TokenType.EqualEqual, "==");
+		names.put(TokenType.Equal, "=");
+		names.put(TokenType.ExclameEqual, "!=");
+		names.put(TokenType.Greater, ">");
+		names.put(TokenType.Less, "<");
+		names.put(TokenType.Void, "void");
+		names.put(TokenType.Int, "int");
+		names.put(TokenType.Double, "double");
+		names.put(TokenType.Public, "public");
+		names.put(TokenType.Private, "private");
+		names.put(TokenType.False, "false");
+		names.put(TokenType.True, "true");
+		names.put(TokenType.Null, "null");
+		names.put(TokenType.Return, "return");
+		names.put(TokenType.New, "new");
+		names.put(TokenType.Class, "class");
+		names.put(TokenType.If, "if");
+		names.put(TokenType.Else, "else");
+		names.put(TokenType.While, "while");
+		names.put(TokenType.Static, "static");
+		return names;
+	}
+
+	/**
+	 * The {@code Worklist} class represents queue of symbols, which contains
+	 * every symbol at most once
+	 */
+	private static class Worklist {
+
+		/** Indexes of symbols in circular order */
+		private int[] queue;
+
+		/** Whether the symbol is in the queue */
+		private boolean[] queued;
+
+		private int head;
+
+		private int size;
+
+		Worklist(int symbolCount) {
+			queue = new int[symbolCount];
+			queued = new boolean[symbolCount];
+		}
+
+		void add(int symbol) {
+			if (queued[symbol])
+				return;
+			queued[symbol] = true;
+			queue[(head + size) % queue.length] = symbol;
+			size++;
+		}
+
+		int poll() {
+			int symbol = queue[head];
+			head = (head + 1) % queue.length;
+			size--;
+			queued[symbol] = false;
+			return symbol;
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package parser;
+
+/**
+ * The {@code Conflict} class represents conflict in the LL(1) parsing table:
+ * two rules for the same nonterminal can be chosen by the same terminal
+ * 
+ * @author Ira Korshunova
+ * 
+ */
+public class Conflict {
+
+	/** Nonterminal on the top of the stack */
+	private final NonTerminal nonTerminal;
+
+	/** Terminal in the input */
+	private final Terminal terminal;
+
+	/** Rule, which was placed in the table earlier */
+	private final Rule overwrittenRule;
+
+	/** Rule, which is placed in the table */
+	private final Rule rule;
+
+	/**
+	 * Creates {@code Conflict} object
+	 * 
+	 * @param nonTerminal
+	 *            nonterminal on the top of the stack
+	 * @param terminal
+	 *            terminal in the input
+	 * @param overwrittenRule
+	 *            rule, which was placed in the table earlier
+	 * @param rule
+	 *            rule, which is placed in the table
+	 */
+	public Conflict(NonTerminal nonTerminal, Terminal terminal, Rule overwrittenRule, Rule rule) {
+		this.nonTerminal = nonTerminal;
+		this.terminal = terminal;
+		this.overwrittenRule = overwrittenRule;
+		this.rule = rule;
+	}
+
+	/**
+	 * Returns nonterminal, which has two rules for the terminal
+	 * 
+	 * @return nonterminal on the top of the stack
+	 */
+	public NonTerminal getNonTerminal() {
+		return nonTerminal;
+	}
+
+	/**
+	 * Returns terminal, which chooses both rules
+	 * 
+	 * @return terminal in the input
+	 */
+	public Terminal getTerminal() {
+		return terminal;
+	}
+
+	/**
+	 * Returns rule, which was placed in the table earlier and was replaced by
+	 * {@link #getRule()}. The parser never applies it for this terminal.
+	 * 
+	 * @return rule, which was removed from the table
+	 */
+	public Rule getOverwrittenRule() {
+		return overwrittenRule;
+	}
+
+	/**
+	 * Returns rule, which stays in the table, so the parser applies it, when
+	 * the nonterminal is on the top of the stack and the terminal is in the
+	 * input
+	 * 
+	 * @return rule, which was placed in the table later
+	 */
+	public Rule getRule() {
+		return rule;
+	}
+
+	@Override
+	public String toString() {
+		return "LL(1) conflict for " + nonTerminal + " on " + terminal + ": rules "
+				+ overwrittenRule.getRuleNumber() + " and " + rule.getRuleNumber();
+	}
+}
@@ -0,0 +1,238 @@
+package parser;
+
+import java.util.List;
+
+import token.Token;
+import exceptions.AnalyzerException;
+
+/**
+ * The {@code IncrementalParser} class keeps the parse tree of the source and
+ * updates it after the edit. Only the smallest node of the tree, which
+ * contains the edited tokens and which symbol is one of the reparsed
+ * nonterminals, is parsed again, and the new subtree replaces it. If the
+ * edited region can't be derived from the nonterminal, the enclosing nodes are
+ * tried, and the whole source is parsed at last. By default the reparsed
+ * nonterminals are {@code ClassMember}, {@code Statement} and
+ * {@code BlockDecl}.
+ *
+ * @author Ira Korshunova
+ *
+ */
+public class IncrementalParser {
+
+	/** Names of nonterminals, which are reparsed by default */
+	private static final String[] DEFAULT_NONTERMINALS = { "ClassMember", "Statement",
+			"BlockDecl" };
+
+	/** Parser, which parses the whole source and the edited regions */
+	private Parser parser;
+
+	/** Whether the nonterminal is reparsed, indexed by codes of symbols plus one */
+	private boolean[] reparsed;
+
+	/** Significant tokens of the source */
+	private List<Token> tokens;
+
+	/** Parse tree of the source or {@code null} */
+	private ParseTree tree;
+
+	/** Number of nodes of the tree, which were replaced by new subtrees */
+	private int replacedNodes;
+
+	/** Nodes from the root to the reparsed node */
+	private int[] path = new int[64];
+
+	/**
+	 * Numbers of the first tokens of nodes in {@code path}. They are before
+	 * the edited tokens, so they stay valid as long as the nodes.
+	 */
+	private int[] firsts = new int[64];
+
+	/**
+	 * Depth of the last node in {@code path}, which is still in the tree. The
+	 * next edit is usually close to the previous one, so the search of nodes
+	 * starts from it.
+	 */
+	private int validDepth;
+
+	/**
+	 * Creates {@code IncrementalParser} object, which reparses
+	 * {@code ClassMember}, {@code Statement} and {@code BlockDecl}
+	 *
+	 * @param grammar
+	 *            compiled LL(1) grammar
+	 */
+	public IncrementalParser(CompiledGrammar grammar) {
+		this(grammar, DEFAULT_NONTERMINALS);
+	}
+
+	/**
+	 * Creates {@code IncrementalParser} object, which reparses the specified
+	 * nonterminals
+	 *
+	 * @param grammar
+	 *            compiled LL(1) grammar
+	 * @param nonTerminals
+	 *            names of reparsed nonterminals
+	 */
+	public IncrementalParser(CompiledGrammar grammar, String... nonTerminals) {
+		parser = new Parser(grammar);
+		parser.setRecordRules(false);
+		parser.setBuildTree(true);
+		int size = 0;
+		for (Rule r : grammar.getRules())
+			size = Math.max(size, r.getLeftSide().getCode() + 2);
+		reparsed = new boolean[size];
+		for (String name : nonTerminals) {
+			Symbol s = grammar.getSymbol(name);
+			if (s != null && s.isNonTerminal() && s.getCode() + 1 < size)
+				reparsed[s.getCode() + 1] = true;
+		}
+	}
+
+	/**
+	 * Parses the whole source
+	 *
+	 * @param list
+	 *            list of significant tokens from the input
+	 * @throws AnalyzerException
+	 *             if the input contains syntax error
+	 */
+	public void parse(List<Token> list) throws AnalyzerException {
+		tokens = list;
+		tree = null;
+		parser.parse(list);
+		tree = parser.getParseTree();
+		replacedNodes = 0;
+		validDepth = 0;
+	}
+
+	/**
+	 * Updates the parse tree after the edit of the list of tokens. Tokens
+	 * before and after the edited region have to be the same as in the
+	 * previous list.
+	 *
+	 * @param list
+	 *            list of significant tokens after the edit
+	 * @param start
+	 *            index of the first edited token
+	 * @param removedCount
+	 *            number of removed tokens
+	 * @param insertedCount
+	 *            number of inserted tokens
+	 * @return index of the root of the reparsed subtree, it's {@code 0} if the
+	 *         whole source was parsed
+	 * @throws AnalyzerException
+	 *             if the input contains syntax error
+	 */
+	public int update(List<Token> list, int start, int removedCount, int insertedCount)
+			throws AnalyzerException {
+		if (start < 0 || removedCount < 0 || insertedCount < 0
+				|| start + insertedCount > list.size()) {
+			throw new IllegalArgumentException("Illegal edit of the tokens!");
+		}
+		if (tree == null) {
+			parse(list);
+			return 0;
+		}
+		int editEnd = start + removedCount;
+		int delta = insertedCount - removedCount;
+		int depth = findPath(start, editEnd);
+		for (int i = depth; i > 0; i--) {
+			int node = path[i];
+			int kind = tree.getKind(node);
+			if (kind + 1 >= reparsed.length || !reparsed[kind + 1])
+				continue;
+
+			int to = firsts[i] + tree.getLength(node) + delta;
+			int root = parser.parseRegion(list, firsts[i], to, kind, tree);
+			if (root != -1) {
+				tree.replace(path[i - 1], firsts[i - 1], node, root);
+				if (delta != 0)
+					tree.shift(root, delta);
+				tokens = list;
+				replacedNodes += tree.count(node);
+				validDepth = i - 1;
+				if (replacedNodes > tree.size() - replacedNodes) {
+					// the arrays are mostly occupied by the replaced nodes
+					root = tree.compact(root);
+					replacedNodes = 0;
+					validDepth = 0;
+				}
+				return root;
+			}
+		}
+		parse(list);
+		return 0;
+	}
+
+	/**
+	 * Finds nodes, which contain the edited tokens. The first token of every
+	 * node is before the edit, so choices of rules, which were made by it,
+	 * are not changed. The search goes up from the nodes of the previous edit
+	 * while they don't contain the edited tokens, and then goes down.
+	 *
+	 * @param start
+	 *            index of the first edited token
+	 * @param editEnd
+	 *            index of the first token after the edit
+	 * @return depth of the deepest node in {@code path}
+	 */
+	private int findPath(int start, int editEnd) {
+		path[0] = 0;
+		firsts[0] = tree.getFirstToken(0);
+		int depth = validDepth;
+		while (depth > 0 && !contains(path[depth], firsts[depth], start, editEnd))
+			depth--;
+		int node = path[depth];
+		while (node != -1) {
+			int next = -1;
+			int first = 0;
+			for (int child = tree.getFirstChild(node); child != -1; child = tree
+					.getNextSibling(child)) {
+				first = firsts[depth] + tree.getOffset(child);
+				if (contains(child, first, start, editEnd)) {
+					next = child;
+					break;
+				}
+			}
+			if (next != -1) {
+				if (++depth == path.length) {
+					int[] larger = new int[path.length * 2];
+					System.arraycopy(path, 0, larger, 0, depth);
+					path = larger;
+					larger = new int[firsts.length * 2];
+					System.arraycopy(firsts, 0, larger, 0, depth);
+					firsts = larger;
+				}
+				path[depth] = next;
+				firsts[depth] = first;
+			}
+			node = next;
+		}
+		return depth;
+	}
+
+	private boolean contains(int node, int first, int start, int editEnd) {
+		return first < start && editEnd <= first + tree.getLength(node);
+	}
+
+	/**
+	 * Returns the parse tree of the source
+	 *
+	 * @return parse tree or {@code null} if the source wasn't parsed or
+	 *         contains syntax error
+	 */
+	public ParseTree getParseTree() {
+		return tree;
+	}
+
+	/**
+	 * Returns significant tokens of the source
+	 *
+	 * @return list of tokens, which were parsed last
+	 */
+	public List<Token> getTokens() {
+		return tokens;
+	}
+}
@@ -0,0 +1,43 @@
+package parser;
+
+import token.Token;
+import exceptions.AnalyzerException;
+
+/**
+ * The {@code ParseListener} interface receives events of the parser as soon as
+ * they happen, so the input can be processed without keeping the whole
+ * sequence of applied rules in memory
+ * 
+ * @author Ira Korshunova
+ * 
+ */
+public interface ParseListener {
+
+	/**
+	 * Called when the rule is applied to the nonterminal on the top of the
+	 * stack
+	 * 
+	 * @param rule
+	 *            applied rule
+	 */
+	void ruleApplied(Rule rule);
+
+	/**
+	 * Called when the terminal on the top of the stack matches the token of
+	 * the input
+	 * 
+	 * @param terminal
+	 *            matched terminal
+	 * @param token
+	 *            token of the input
+	 */
+	void terminalMatched(Terminal terminal, Token token);
+
+	/**
+	 * Called when syntax error is found, before the parser throws it
+	 * 
+	 * @param error
+	 *            syntax error
+	 */
+	void syntaxError(AnalyzerException error);
+}
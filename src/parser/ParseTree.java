@@ -0,0 +1,625 @@
+package parser;
+
+import java.util.Arrays;
+
+/**
+ * The {@code ParseTree} class represents concrete syntax tree, which is built
+ * by the parser. Nodes are not stored as objects: their symbols, rules, ranges
+ * of tokens and links to children and siblings are kept in parallel arrays,
+ * and the node is referred to by its index. The root has index {@code 0}.
+ * Tokens are numbered among the significant tokens of the input, so the range
+ * of node, which derives empty string, is empty.
+ * <p>
+ * The first token of node is stored relative to the first token of its
+ * parent, and the last token is stored relative to the first token of node.
+ * So the edit of the input, which changes the number of tokens, changes only
+ * the ancestors of the edited node and their children after it, and the
+ * following subtrees are not touched. Numbers of tokens are computed from the
+ * ancestors of node, the {@link Cursor} computes them on the way down.
+ *
+ * @author Ira Korshunova
+ *
+ */
+public class ParseTree {
+
+	/** Initial capacity of the arrays */
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	/** Grammar, which symbols and rules are referred to by the nodes */
+	private CompiledGrammar grammar;
+
+	/** Codes of symbols of nodes */
+	private int[] kinds;
+
+	/** Numbers of rules applied to nonterminals or {@code -1} for terminals */
+	private int[] rules;
+
+	/**
+	 * Numbers of the first tokens of nodes minus the first tokens of their
+	 * parents
+	 */
+	private int[] firstTokens;
+
+	/** Numbers of the last tokens of nodes minus their first tokens */
+	private int[] lastTokens;
+
+	/** Indexes of parents or {@code -1} */
+	private int[] parents;
+
+	/** Indexes of the first children or {@code -1} */
+	private int[] firstChildren;
+
+	/** Indexes of the next siblings or {@code -1} */
+	private int[] nextSiblings;
+
+	/** Number of nodes */
+	private int size;
+
+	/**
+	 * Creates empty {@code ParseTree} object
+	 */
+	ParseTree() {
+		kinds = new int[DEFAULT_CAPACITY];
+		rules = new int[DEFAULT_CAPACITY];
+		firstTokens = new int[DEFAULT_CAPACITY];
+		lastTokens = new int[DEFAULT_CAPACITY];
+		parents = new int[DEFAULT_CAPACITY];
+		firstChildren = new int[DEFAULT_CAPACITY];
+		nextSiblings = new int[DEFAULT_CAPACITY];
+	}
+
+	/**
+	 * Removes all nodes and creates the root. The arrays are kept for the new
+	 * tree.
+	 *
+	 * @param grammar
+	 *            grammar of the parser
+	 */
+	void clear(CompiledGrammar grammar) {
+		this.grammar = grammar;
+		size = 0;
+		addNode(grammar.getStartSymbol().getCode());
+	}
+
+	/**
+	 * Records the rule, which was applied to the nonterminal, and appends
+	 * nodes for symbols of its right side as children
+	 *
+	 * @param node
+	 *            index of nonterminal node
+	 * @param rule
+	 *            number of rule
+	 * @param firstToken
+	 *            number of the first token of the node
+	 * @param rightSides
+	 *            packed right sides of rules
+	 * @param rightSide
+	 *            index of right side of the rule
+	 * @return index of the last child or {@code -1} if there are no children
+	 */
+	int expand(int node, int rule, int firstToken, int[] rightSides, int rightSide) {
+		rules[node] = rule;
+		firstTokens[node] = firstToken;
+		int first = size;
+		for (int j = rightSide + 1; j <= rightSide + rightSides[rightSide]; j++) {
+			if (rightSides[j] != Parser.epsilon.getCode()) {
+				if (size > first)
+					nextSiblings[size - 1] = size;
+				int child = addNode(rightSides[j]);
+				parents[child] = node;
+			}
+		}
+		if (size == first)
+			return -1;
+		firstChildren[node] = first;
+		return size - 1;
+	}
+
+	/**
+	 * Records the token, which was matched by the terminal
+	 *
+	 * @param node
+	 *            index of terminal node
+	 * @param token
+	 *            number of the token
+	 */
+	void match(int node, int token) {
+		firstTokens[node] = token;
+	}
+
+	/**
+	 * Computes the last tokens of nodes after the subtree was parsed. Nodes of
+	 * the subtree are placed after its root, and parents are created before
+	 * their children, so the range of parent is known when the ranges of its
+	 * children are computed. Then the numbers of tokens, which were recorded
+	 * during the parsing, are made relative, starting from the last node. The
+	 * first token of the root stays absolute until it's linked to the tree.
+	 *
+	 * @param root
+	 *            index of the root of subtree
+	 * @param lastToken
+	 *            number of the last token of the subtree
+	 */
+	void complete(int root, int lastToken) {
+		lastTokens[root] = lastToken;
+		for (int node = root; node < size; node++) {
+			for (int child = firstChildren[node]; child != -1; child = nextSiblings[child]) {
+				int next = nextSiblings[child];
+				lastTokens[child] = next == -1 ? lastTokens[node] : firstTokens[next] - 1;
+			}
+		}
+		for (int node = size - 1; node > root; node--) {
+			lastTokens[node] -= firstTokens[node];
+			firstTokens[node] -= firstTokens[parents[node]];
+		}
+		lastTokens[root] -= firstTokens[root];
+	}
+
+	/**
+	 * Appends node, which isn't linked to the tree yet
+	 *
+	 * @param kind
+	 *            code of symbol
+	 * @return index of node
+	 */
+	int append(int kind) {
+		return addNode(kind);
+	}
+
+	/**
+	 * Removes nodes, which were appended after the specified size
+	 *
+	 * @param size
+	 *            number of nodes to be kept
+	 */
+	void truncate(int size) {
+		this.size = size;
+	}
+
+	/**
+	 * Replaces the node by another node in the list of children of its parent
+	 *
+	 * @param parent
+	 *            index of parent
+	 * @param parentFirstToken
+	 *            number of the first token of parent
+	 * @param node
+	 *            index of replaced node
+	 * @param replacement
+	 *            index of new node, which first token is absolute
+	 */
+	void replace(int parent, int parentFirstToken, int node, int replacement) {
+		firstTokens[replacement] -= parentFirstToken;
+		parents[replacement] = parent;
+		nextSiblings[replacement] = nextSiblings[node];
+		if (firstChildren[parent] == node) {
+			firstChildren[parent] = replacement;
+			return;
+		}
+		int child = firstChildren[parent];
+		while (nextSiblings[child] != node)
+			child = nextSiblings[child];
+		nextSiblings[child] = replacement;
+	}
+
+	/**
+	 * Shifts ranges of nodes after the edit of the input. The ancestors of the
+	 * edited node are extended, and their children after it are moved, which
+	 * moves their subtrees too.
+	 *
+	 * @param node
+	 *            index of the edited node
+	 * @param delta
+	 *            difference between the numbers of inserted and removed
+	 *            tokens
+	 */
+	void shift(int node, int delta) {
+		for (int parent = parents[node]; parent != -1; node = parent, parent = parents[node]) {
+			lastTokens[parent] += delta;
+			for (int sibling = nextSiblings[node]; sibling != -1; sibling = nextSiblings[sibling])
+				firstTokens[sibling] += delta;
+		}
+	}
+
+	/**
+	 * Counts nodes of the subtree
+	 *
+	 * @param node
+	 *            index of the root of subtree
+	 * @return number of nodes in the subtree
+	 */
+	int count(int node) {
+		int count = 0;
+		int[] pending = new int[64];
+		int pendingSize = 0;
+		pending[pendingSize++] = node;
+		while (pendingSize > 0) {
+			int current = pending[--pendingSize];
+			count++;
+			for (int child = firstChildren[current]; child != -1; child = nextSiblings[child]) {
+				if (pendingSize == pending.length)
+					pending = Arrays.copyOf(pending, pendingSize * 2);
+				pending[pendingSize++] = child;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Removes nodes, which are not reachable from the root, after the
+	 * subtrees were replaced. Children of every node are placed one after
+	 * another again.
+	 *
+	 * @param node
+	 *            index of node, which new index is needed
+	 * @return new index of the node or {@code -1} if it was removed
+	 */
+	int compact(int node) {
+		int[] order = new int[size];
+		int count = 1;
+		int[] newParents = new int[kinds.length];
+		int[] newFirstChildren = new int[kinds.length];
+		int[] newNextSiblings = new int[kinds.length];
+		newParents[0] = -1;
+		newNextSiblings[0] = -1;
+		for (int i = 0; i < count; i++) {
+			int child = firstChildren[order[i]];
+			newFirstChildren[i] = child == -1 ? -1 : count;
+			for (; child != -1; child = nextSiblings[child]) {
+				newParents[count] = i;
+				newNextSiblings[count] = nextSiblings[child] == -1 ? -1 : count + 1;
+				order[count++] = child;
+			}
+		}
+		int[] newKinds = new int[kinds.length];
+		int[] newRules = new int[kinds.length];
+		int[] newFirstTokens = new int[kinds.length];
+		int[] newLastTokens = new int[kinds.length];
+		for (int i = 0; i < count; i++) {
+			newKinds[i] = kinds[order[i]];
+			newRules[i] = rules[order[i]];
+			newFirstTokens[i] = firstTokens[order[i]];
+			newLastTokens[i] = lastTokens[order[i]];
+		}
+		kinds = newKinds;
+		rules = newRules;
+		firstTokens = newFirstTokens;
+		lastTokens = newLastTokens;
+		parents = newParents;
+		firstChildren = newFirstChildren;
+		nextSiblings = newNextSiblings;
+		size = count;
+		for (int i = 0; i < count; i++) {
+			if (order[i] == node)
+				return i;
+		}
+		return -1;
+	}
+
+	private int addNode(int kind) {
+		if (size == kinds.length) {
+			int capacity = size * 2;
+			kinds = Arrays.copyOf(kinds, capacity);
+			rules = Arrays.copyOf(rules, capacity);
+			firstTokens = Arrays.copyOf(firstTokens, capacity);
+			lastTokens = Arrays.copyOf(lastTokens, capacity);
+			parents = Arrays.copyOf(parents, capacity);
+			firstChildren = Arrays.copyOf(firstChildren, capacity);
+			nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+		}
+		kinds[size] = kind;
+		rules[size] = -1;
+		firstTokens[size] = 0;
+		lastTokens[size] = -1;
+		parents[size] = -1;
+		firstChildren[size] = -1;
+		nextSiblings[size] = -1;
+		return size++;
+	}
+
+	/**
+	 * Returns number of nodes
+	 *
+	 * @return number of nodes in the tree
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns code of symbol of node
+	 *
+	 * @param node
+	 *            index of node
+	 * @return code of terminal or nonterminal
+	 */
+	public int getKind(int node) {
+		return kinds[checkIndex(node)];
+	}
+
+	/**
+	 * Returns symbol of node
+	 *
+	 * @param node
+	 *            index of node
+	 * @return terminal or nonterminal
+	 */
+	public Symbol getSymbol(int node) {
+		return grammar.getSymbol(kinds[checkIndex(node)]);
+	}
+
+	/**
+	 * Returns number of rule, which was applied to the nonterminal
+	 *
+	 * @param node
+	 *            index of node
+	 * @return number of rule or {@code -1} if node is terminal
+	 */
+	public int getRuleNumber(int node) {
+		return rules[checkIndex(node)];
+	}
+
+	/**
+	 * Returns rule, which was applied to the nonterminal
+	 *
+	 * @param node
+	 *            index of node
+	 * @return rule or {@code null} if node is terminal
+	 */
+	public Rule getRule(int node) {
+		int rule = rules[checkIndex(node)];
+		return rule == -1 ? null : grammar.getRule(rule);
+	}
+
+	/**
+	 * Returns number of the first token of node. It's computed from the
+	 * ancestors of node, so the cursor should be used to visit many nodes.
+	 *
+	 * @param node
+	 *            index of node
+	 * @return number of the first significant token, inclusive
+	 */
+	public int getFirstToken(int node) {
+		int firstToken = 0;
+		for (int i = checkIndex(node); i != -1; i = parents[i])
+			firstToken += firstTokens[i];
+		return firstToken;
+	}
+
+	/**
+	 * Returns number of the last token of node. It's computed from the
+	 * ancestors of node, so the cursor should be used to visit many nodes.
+	 *
+	 * @param node
+	 *            index of node
+	 * @return number of the last significant token, inclusive, or number of
+	 *         the first token minus one if node derives empty string
+	 */
+	public int getLastToken(int node) {
+		return getFirstToken(node) + lastTokens[node];
+	}
+
+	/**
+	 * Returns number of the first token of node relative to the first token of
+	 * its parent
+	 */
+	int getOffset(int node) {
+		return firstTokens[checkIndex(node)];
+	}
+
+	/**
+	 * Returns number of tokens of node
+	 */
+	int getLength(int node) {
+		return lastTokens[checkIndex(node)] + 1;
+	}
+
+	/**
+	 * Returns the first child of node
+	 *
+	 * @param node
+	 *            index of node
+	 * @return index of the first child or {@code -1}
+	 */
+	public int getFirstChild(int node) {
+		return firstChildren[checkIndex(node)];
+	}
+
+	/**
+	 * Returns the next sibling of node
+	 *
+	 * @param node
+	 *            index of node
+	 * @return index of the next sibling or {@code -1}
+	 */
+	public int getNextSibling(int node) {
+		return nextSiblings[checkIndex(node)];
+	}
+
+	/**
+	 * Creates cursor, which is positioned on the root
+	 *
+	 * @return cursor over the nodes of this tree
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	private int checkIndex(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		return index;
+	}
+
+	/**
+	 * The {@code Cursor} class walks over nodes of the tree without creating
+	 * objects for them. The cursor keeps the path from the root to the current
+	 * node, so it can return to the parent.
+	 */
+	public class Cursor {
+
+		/** Indexes of nodes from the root to the current node */
+		private int[] path = new int[64];
+
+		/** Numbers of the first tokens of nodes in the path */
+		private int[] firsts = new int[64];
+
+		/** Depth of the current node */
+		private int depth;
+
+		private Cursor() {
+			firsts[0] = firstTokens[0];
+		}
+
+		/**
+		 * Moves the cursor to the first child of the current node
+		 *
+		 * @return {@code false} if the node has no children
+		 */
+		public boolean gotoFirstChild() {
+			int child = firstChildren[getNode()];
+			if (child == -1)
+				return false;
+			if (depth + 1 == path.length) {
+				path = Arrays.copyOf(path, path.length * 2);
+				firsts = Arrays.copyOf(firsts, firsts.length * 2);
+			}
+			firsts[depth + 1] = firsts[depth] + firstTokens[child];
+			path[++depth] = child;
+			return true;
+		}
+
+		/**
+		 * Moves the cursor to the next sibling of the current node
+		 *
+		 * @return {@code false} if the node has no next sibling
+		 */
+		public boolean gotoNextSibling() {
+			int sibling = nextSiblings[getNode()];
+			if (sibling == -1)
+				return false;
+			firsts[depth] += firstTokens[sibling] - firstTokens[path[depth]];
+			path[depth] = sibling;
+			return true;
+		}
+
+		/**
+		 * Moves the cursor to the parent of the current node
+		 *
+		 * @return {@code false} if the node is the root
+		 */
+		public boolean gotoParent() {
+			if (depth == 0)
+				return false;
+			depth--;
+			return true;
+		}
+
+		/**
+		 * Moves the cursor to the next node in preorder
+		 *
+		 * @return {@code false} if the current node is the last one
+		 */
+		public boolean next() {
+			if (gotoFirstChild())
+				return true;
+			int saved = depth;
+			do {
+				if (gotoNextSibling())
+					return true;
+			} while (gotoParent());
+			// the cursor stays on the last node
+			while (depth < saved && gotoLastChild())
+				;
+			return false;
+		}
+
+		private boolean gotoLastChild() {
+			if (!gotoFirstChild())
+				return false;
+			while (gotoNextSibling())
+				;
+			return true;
+		}
+
+		/**
+		 * Returns the current node
+		 *
+		 * @return index of node in the tree
+		 */
+		public int getNode() {
+			return checkIndex(path[depth]);
+		}
+
+		/**
+		 * Returns depth of the current node
+		 *
+		 * @return number of ancestors of node, {@code 0} for the root
+		 */
+		public int getDepth() {
+			return depth;
+		}
+
+		/**
+		 * Returns code of symbol of the current node, as
+		 * {@link ParseTree#getKind(int)} does
+		 *
+		 * @return code of terminal or nonterminal
+		 */
+		public int getKind() {
+			return kinds[getNode()];
+		}
+
+		/**
+		 * Returns symbol of the current node, as
+		 * {@link ParseTree#getSymbol(int)} does
+		 *
+		 * @return terminal or nonterminal
+		 */
+		public Symbol getSymbol() {
+			return ParseTree.this.getSymbol(getNode());
+		}
+
+		/**
+		 * Returns number of rule, which was applied to the current node, as
+		 * {@link ParseTree#getRuleNumber(int)} does
+		 *
+		 * @return number of rule or {@code -1} if node is terminal
+		 */
+		public int getRuleNumber() {
+			return rules[getNode()];
+		}
+
+		/**
+		 * Returns rule, which was applied to the current node, as
+		 * {@link ParseTree#getRule(int)} does
+		 *
+		 * @return rule or {@code null} if node is terminal
+		 */
+		public Rule getRule() {
+			return ParseTree.this.getRule(getNode());
+		}
+
+		/**
+		 * Returns number of the first token of the current node, as
+		 * {@link ParseTree#getFirstToken(int)} does. The number is computed
+		 * when the cursor moves, so it's returned without visiting ancestors.
+		 *
+		 * @return number of the first significant token, inclusive
+		 */
+		public int getFirstToken() {
+			return firsts[depth];
+		}
+
+		/**
+		 * Returns number of the last token of the current node, as
+		 * {@link ParseTree#getLastToken(int)} does
+		 *
+		 * @return number of the last significant token, inclusive, or number
+		 *         of the first token minus one if node derives empty string
+		 */
+		public int getLastToken() {
+			return firsts[depth] + lastTokens[getNode()];
+		}
+	}
+}
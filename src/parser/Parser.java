@@ -2,26 +2,21 @@ package parser;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.AbstractMap.SimpleEntry;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Scanner;
-import java.util.Set;
-import java.util.Stack;
-import java.util.StringTokenizer;
 
 import token.Token;
+import token.TokenSource;
+import token.TokenType;
 import exceptions.AnalyzerException;
 
 /**
  * The {@code Parser} class represents predictive parser. It accepts only LL(1)
- * grammar. If the grammar is not LL(1) most likely you will get
- * {@code StackOverflowError}. Productions in the grammar use the following
+ * grammar. If the grammar is not LL(1), the conflicts are reported by
+ * {@link CompiledGrammar#getConflicts()}. Productions in the grammar use the
+ * following
  * format, for example:
  * 
  * <blockquote>
@@ -51,49 +46,98 @@ public class Parser {
 	/** Terminal symbol which represents end of program */
 	public static Terminal endOfProgram = new Terminal(-1, "ENDOFPROGRAM");
 
-	/** Start symbol of the grammar */
-	private NonTerminal startSymbol;
+	/** Grammar, which is used by this parser */
+	private CompiledGrammar grammar;
 
-	/** List of rules in the grammar without alternations */
-	private List<Rule> rules;
+	/** Holder, which provides the grammar for every parsing, or {@code null} */
+	private ReloadableGrammar reloadableGrammar;
 
-	/** Grammar's alphabet. Contains terminal and nonterminal symbols */
-	private Set<Symbol> alphabet;
+	/** Sequence of applied rules during the derivations */
+	private List<Rule> sequenceOfAppliedRules;
 
-	/** Mapping from string representation of symbol to its object */
-	private Map<String, Symbol> nameToSymbol;
+	/** Whether applied rules are added to {@code sequenceOfAppliedRules} */
+	private boolean recordRules = true;
 
-	/** Mapping from symbol to it's first set */
-	private Map<Symbol, Set<Terminal>> firstSet;
+	/** Listener of parsing events or {@code null} */
+	private ParseListener listener;
 
-	/** Mapping from symbol to it's follow set */
-	private Map<Symbol, Set<Terminal>> followSet;
+	/** Stack of codes of symbols, which is reused by every parsing */
+	private int[] stack = new int[64];
 
-	/** Representation of parsing table for LL(1) parser */
-	private Map<SimpleEntry<NonTerminal, Terminal>, Symbol[]> parsingTable;
+	/** Nodes of the parse tree for symbols on the stack */
+	private int[] nodes = new int[64];
 
-	/** Stack of terminals, which were constructed from input tokens */
-	private Stack<Terminal> input;
+	/** Number of symbols on the stack */
+	private int stackSize;
 
-	/** Sequence of applied rules during the derivations */
-	private List<Rule> sequenceOfAppliedRules;
+	/** Whether the parse tree is built during the parsing */
+	private boolean buildTree;
+
+	/** Whether chains of operators are parsed without the stack */
+	private boolean operatorFastPath;
+
+	/** Arrays of the parse tree, which are reused by every parsing */
+	private ParseTree tree;
+
+	/** Parse tree of the last input or {@code null} */
+	private ParseTree parseTree;
+
+	/** List of tokens, which is parsed, or {@code null} */
+	private List<Token> tokens;
+
+	/** Index of the next token in the list */
+	private int position;
+
+	/** Source of tokens, which is parsed, or {@code null} */
+	private TokenSource source;
+
+	/** Token, which is the current terminal of the input */
+	private Token inputToken;
+
+	/** Syntax errors of the recovering parsing or {@code null} */
+	private List<AnalyzerException> errors;
+
+	/** Whether the parser skips input or stack after the last syntax error */
+	private boolean recovering;
 
 	/**
-	 * Initializes a newly created {@code Parser} object
+	 * Initializes a newly created {@code Parser} object. The grammar is
+	 * compiled from file for every parsing.
 	 * 
 	 */
 
 	public Parser() {
-		rules = new ArrayList<Rule>();
-		alphabet = new HashSet<Symbol>();
-		nameToSymbol = new HashMap<String, Symbol>();
-		alphabet.add(epsilon);
-		firstSet = new HashMap<Symbol, Set<Terminal>>();
-		followSet = new HashMap<Symbol, Set<Terminal>>();
-		parsingTable = new HashMap<SimpleEntry<NonTerminal, Terminal>, Symbol[]>();
 		sequenceOfAppliedRules = new ArrayList<Rule>();
 	}
 
+	/**
+	 * Initializes a newly created {@code Parser} object, which parses sources
+	 * using the compiled grammar. The parser holds only the state of one
+	 * parsing, so each thread has to create its own parser, while the grammar
+	 * can be shared. Arrays of the parser are reused by every parsing.
+	 * 
+	 * @param grammar
+	 *            compiled LL(1) grammar
+	 */
+	public Parser(CompiledGrammar grammar) {
+		this();
+		this.grammar = grammar;
+	}
+
+	/**
+	 * Initializes a newly created {@code Parser} object, which takes the
+	 * current grammar of the holder at the start of every parsing. The grammar
+	 * isn't changed until the parsing is over.
+	 * 
+	 * @param reloadableGrammar
+	 *            holder of the grammar, which is reloaded after changes of the
+	 *            file
+	 */
+	public Parser(ReloadableGrammar reloadableGrammar) {
+		this(reloadableGrammar.get());
+		this.reloadableGrammar = reloadableGrammar;
+	}
+
 	/**
 	 * Parses the source, represented by the list of tokens, using the specified
 	 * LL(1) grammar rules
@@ -109,396 +153,593 @@ public class Parser {
 	 */
 	public void parse(File grammarFile, List<Token> list) throws FileNotFoundException,
 			AnalyzerException {
-		parseRules(grammarFile);
-		calculateFirst();
-		calculateFollow();
-		buildParsingTable();
-		input = convertTokensToStack(list);
-		performParsingAlgorithm();
+		grammar = CompiledGrammar.compile(grammarFile);
+		parse(list);
 	}
 
 	/**
-	 * Returns the sequence of grammar rules, which were applied during the
-	 * parsing
-	 * 
-	 * @return list of applied rules
+	 * Parses the source, tokens of which are pulled from the token source one
+	 * at a time, using the specified LL(1) grammar rules. Auxiliary tokens are
+	 * skipped. Lexical errors are reported as soon as the parser reaches them.
 	 * 
+	 * @param grammarFile
+	 *            file with grammar rules
+	 * @param source
+	 *            source of tokens from the input
+	 * @throws IOException
+	 *             if file doesn't exist or the token source can't be read
+	 * @throws AnalyzerException
+	 *             if the input contains lexical or syntax error
 	 */
-	public List<Rule> getSequenceOfAppliedRules() {
-		return sequenceOfAppliedRules;
+	public void parse(File grammarFile, TokenSource source) throws IOException,
+			AnalyzerException {
+		grammar = CompiledGrammar.compile(grammarFile);
+		parse(source);
 	}
 
 	/**
-	 * Implements LL(1) predictive parsing algorithm
+	 * Parses the source, represented by the list of tokens, using the grammar
+	 * of this parser. The list and its tokens are only read, so one list can
+	 * be parsed by several parsers at once.
 	 * 
+	 * @param list
+	 *            list of tokens from the input
 	 * @throws AnalyzerException
-	 *             if syntax error was found
+	 *             if the input contains syntax error
 	 */
-	private void performParsingAlgorithm() throws AnalyzerException {
-		Stack<Symbol> stack = new Stack<Symbol>();
-		stack.push(endOfProgram);
-		stack.push(startSymbol);
-		int parsedTokensCount = 0;
-		do {
+	public void parse(List<Token> list) throws AnalyzerException {
+		updateGrammar();
+		checkGrammar();
+		reset();
+		tokens = list;
+		try {
+			performParsingAlgorithm();
+		} catch (IOException e) {
+			// tokens of the list are not read from any stream
+			throw new IllegalStateException(e);
+		} finally {
+			tokens = null;
+		}
+	}
 
-			Symbol stackTop = stack.peek();
-			Terminal inputTop = input.peek();
-			if (stackTop.isTerminal()) {
-				if (stackTop.equals(inputTop)) {
-					stack.pop();
-					input.pop();
-					parsedTokensCount++;
-				} else {
-					throw new AnalyzerException("Syntax error after token #" + parsedTokensCount,
-							parsedTokensCount);
-				}
-			} else {
-				SimpleEntry<NonTerminal, Terminal> tableKey = new SimpleEntry<NonTerminal, Terminal>(
-						(NonTerminal) stackTop, inputTop);
-				if (parsingTable.containsKey(tableKey)) {
-					stack.pop();
-					Symbol[] tableEntry = parsingTable.get(tableKey);
-					for (int j = tableEntry.length - 1; j > -1; j--) {
-						if (!tableEntry[j].equals(epsilon))
-							stack.push(tableEntry[j]);
-					}
-					sequenceOfAppliedRules.add(getRule((NonTerminal) stackTop, tableEntry));
-				} else {
-					throw new AnalyzerException("Syntax error after token #" + parsedTokensCount,
-							parsedTokensCount);
-				}
-			}
-		} while (!stack.isEmpty() && !input.isEmpty());
+	/**
+	 * Parses the source, tokens of which are pulled from the token source one
+	 * at a time, using the grammar of this parser
+	 * 
+	 * @param source
+	 *            source of tokens from the input
+	 * @throws IOException
+	 *             if the token source can't be read
+	 * @throws AnalyzerException
+	 *             if the input contains lexical or syntax error
+	 */
+	public void parse(TokenSource source) throws IOException, AnalyzerException {
+		updateGrammar();
+		checkGrammar();
+		reset();
+		this.source = source;
+		try {
+			performParsingAlgorithm();
+		} finally {
+			this.source = null;
+		}
+	}
 
-		if (!input.isEmpty()) {
-			throw new AnalyzerException("Syntax error after token #" + parsedTokensCount,
-					parsedTokensCount);
+	/**
+	 * Parses the source, represented by the list of tokens, without stopping
+	 * at syntax errors. If the nonterminal on the top of the stack has no rule
+	 * for the current terminal, the nonterminal is popped when the terminal
+	 * belongs to its follow set or can be matched by a symbol below it.
+	 * Otherwise the terminal is skipped. Unmatched terminal on the top of the
+	 * stack is popped as missing in the same cases. Only the first error is
+	 * reported until the next terminal is matched.
+	 * {@code Error} tokens of the lexer are skipped.
+	 * 
+	 * @param list
+	 *            list of tokens from the input
+	 * @return syntax errors in the order of their positions
+	 */
+	public List<AnalyzerException> parseWithRecovery(List<Token> list) {
+		List<AnalyzerException> diagnostics = new ArrayList<AnalyzerException>();
+		errors = diagnostics;
+		try {
+			parse(list);
+		} catch (AnalyzerException e) {
+			// errors are collected instead of being thrown
+			throw new IllegalStateException(e);
+		} finally {
+			errors = null;
 		}
+		return diagnostics;
 	}
 
 	/**
-	 * Converts a list of tokens from lexer to stack of terminals for parser.
-	 * Fist token in the input will be at the top of the stack.
+	 * Parses the source, tokens of which are pulled from the token source,
+	 * without stopping at syntax errors. Recovery is the same as in
+	 * {@link #parseWithRecovery(List)}.
 	 * 
-	 * @param inputTokens
-	 *            list of input tokens
-	 * @return stack of terminal symbols
+	 * @param source
+	 *            source of tokens from the input
+	 * @return syntax errors in the order of their positions
+	 * @throws IOException
+	 *             if the token source can't be read
+	 * @throws AnalyzerException
+	 *             if the input contains lexical error
 	 */
-	private Stack<Terminal> convertTokensToStack(List<Token> inputTokens) {
-		Stack<Terminal> input = new Stack<Terminal>();
-		Collections.reverse(inputTokens);
-		input.push(endOfProgram);
-		for (Token token : inputTokens) {
-			Terminal s = (Terminal) nameToSymbol.get(token.getTokenString());
-			if (s == null) {
-				switch (token.getTokenType()) {
-				case Identifier:
-					s = (Terminal) nameToSymbol.get("id");
-					break;
-				case IntConstant:
-					s = (Terminal) nameToSymbol.get("intConst");
-					break;
-				case DoubleConstant:
-					s = (Terminal) nameToSymbol.get("doubleConst");
-					break;
-				default:
-					throw new RuntimeException("Somethig is wrong!");
-				}
-			}
-			input.push(s);
+	public List<AnalyzerException> parseWithRecovery(TokenSource source) throws IOException,
+			AnalyzerException {
+		List<AnalyzerException> diagnostics = new ArrayList<AnalyzerException>();
+		errors = diagnostics;
+		try {
+			parse(source);
+		} finally {
+			errors = null;
 		}
-		return input;
+		return diagnostics;
 	}
 
 	/**
-	 * Automatically builds LL(1) parsing table by using follow and first set
+	 * Clears the result of the previous parsing. The arrays of the parser
+	 * are kept, so the next parsing doesn't allocate them again.
 	 */
-	private void buildParsingTable() {
-		for (Rule r : rules) {
-			Symbol[] rightSide = r.getRightSide();
-			NonTerminal leftSide = r.getLeftSide();
-			Set<Terminal> firstSetForRightSide = first(rightSide);
-			Set<Terminal> followSetForLeftSide = followSet.get(leftSide);
-
-			for (Terminal s : firstSetForRightSide) {
-				parsingTable.put(new SimpleEntry<NonTerminal, Terminal>(leftSide, s), rightSide);
-			}
+	public void reset() {
+		sequenceOfAppliedRules.clear();
+		parseTree = null;
+		stackSize = 0;
+		tokens = null;
+		position = 0;
+		source = null;
+		inputToken = null;
+		recovering = false;
+	}
 
-			if (firstSetForRightSide.contains(epsilon)) {
-				for (Terminal s : followSetForLeftSide) {
-					parsingTable
-							.put(new SimpleEntry<NonTerminal, Terminal>(leftSide, s), rightSide);
-				}
-			}
-		}
+	private void updateGrammar() {
+		if (reloadableGrammar != null)
+			grammar = reloadableGrammar.get();
 	}
 
-	private void calculateFirst() {
-		for (Symbol s : alphabet) {
-			firstSet.put(s, new HashSet<Terminal>());
-		}
-		for (Symbol s : alphabet) {
-			first(s);
+	private void checkGrammar() {
+		if (grammar == null) {
+			throw new IllegalStateException("No grammar was compiled");
 		}
 	}
 
 	/**
-	 * Calculates first set for specified symbol. By using the next rules:
-	 * <blockquote>
+	 * Sets listener, which receives events of the parser
 	 * 
-	 * <pre>
-	 * 1. If X is terminal, then FIRST(X) is {X}.
-	 * 2. If X -> EPSILON is production, then add EPSILON to FIRST(X).
-	 * 3. If X is nonterminal and X -> Y1 Y2 ... Yk is a production, 
-	 * then place <i>a</i> (terminal) in FIRST(X) if for some i <i>a</i> is in FIRST(Yi), and Y1, ... ,Yi-1 -> EPSILON. 
-	 * If EPSILON is in FIRST(Yj) for all j = 1, 2, ... , k, then add EPSILON to FIRST(X).
-	 * </pre>
+	 * @param listener
+	 *            listener or {@code null} to remove it
+	 */
+	public void setParseListener(ParseListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Returns listener, which receives events of the parser
 	 * 
-	 * </blockquote>
+	 * @return listener or {@code null} if there is no listener
+	 */
+	public ParseListener getParseListener() {
+		return listener;
+	}
+
+	/**
+	 * Sets whether the parser keeps applied rules in
+	 * {@link #getSequenceOfAppliedRules()}. The rules are kept by default. If
+	 * the input is processed by {@link ParseListener}, the parser can use
+	 * constant memory without them.
 	 * 
+	 * @param recordRules
+	 *            {@code true} if applied rules have to be kept
+	 */
+	public void setRecordRules(boolean recordRules) {
+		this.recordRules = recordRules;
+	}
+
+	/**
+	 * Returns whether the parser keeps applied rules in
+	 * {@link #getSequenceOfAppliedRules()}
 	 * 
-	 * @param s
-	 *            terminal or nonterminal symbol of grammar
+	 * @return {@code true} if applied rules are kept
 	 */
-	private void first(Symbol s) {
-		Set<Terminal> first = firstSet.get(s);
-		Set<Terminal> auxiliarySet;
-		if (s.isTerminal()) {
-			first.add((Terminal) s);
-			return;
-		}
+	public boolean isRecordRules() {
+		return recordRules;
+	}
 
-		for (Rule r : getRulesWithLeftSide((NonTerminal) s)) {
-			Symbol[] rightSide = r.getRightSide();
-			first(rightSide[0]);
-			auxiliarySet = new HashSet<Terminal>(firstSet.get(rightSide[0]));
-			auxiliarySet.remove(epsilon);
-			first.addAll(auxiliarySet);
-
-			for (int i = 1; i < rightSide.length
-					&& firstSet.get(rightSide[i - 1]).contains(epsilon); i++) {
-				first(rightSide[i]);
-				auxiliarySet = new HashSet<Terminal>(firstSet.get(rightSide[i]));
-				auxiliarySet.remove(epsilon);
-				first.addAll(auxiliarySet);
-			}
+	/**
+	 * Sets whether the parser applies rules of operator chains, such as
+	 * {@code ExprOp -> ArithmOp Term ExprOp}, directly. The operator is
+	 * matched at once, and only the operand is pushed on the stack, while the
+	 * chain stays on the top. The applied rules, the parse tree and the events
+	 * are the same as without the fast path. It isn't used by default.
+	 * 
+	 * @param operatorFastPath
+	 *            {@code true} if chains of operators are parsed directly
+	 */
+	public void setOperatorFastPath(boolean operatorFastPath) {
+		this.operatorFastPath = operatorFastPath;
+	}
 
-			boolean allContainEpsilon = true;
-			for (Symbol rightS : rightSide) {
-				if (!firstSet.get(rightS).contains(epsilon)) {
-					allContainEpsilon = false;
-					break;
-				}
-			}
-			if (allContainEpsilon)
-				first.add(epsilon);
-		}
+	/**
+	 * Returns whether the parser applies rules of operator chains directly
+	 * 
+	 * @return {@code true} if chains of operators are parsed directly
+	 */
+	public boolean isOperatorFastPath() {
+		return operatorFastPath;
 	}
 
 	/**
-	 * Calculates first set for chain of symbols
+	 * Sets whether the parser builds the parse tree. The tree isn't built by
+	 * default.
 	 * 
-	 * @param chain
-	 *            string of symbols
-	 * @return first set for the specified string
+	 * @param buildTree
+	 *            {@code true} if the parse tree has to be built
 	 */
-	private Set<Terminal> first(Symbol[] chain) {
-		Set<Terminal> firstSetForChain = new HashSet<Terminal>();
-		Set<Terminal> auxiliarySet;
-		auxiliarySet = new HashSet<Terminal>(firstSet.get(chain[0]));
-		auxiliarySet.remove(epsilon);
-		firstSetForChain.addAll(auxiliarySet);
-
-		for (int i = 1; i < chain.length && firstSet.get(chain[i - 1]).contains(epsilon); i++) {
-			auxiliarySet = new HashSet<Terminal>(firstSet.get(chain[i]));
-			auxiliarySet.remove(epsilon);
-			firstSetForChain.addAll(auxiliarySet);
-		}
+	public void setBuildTree(boolean buildTree) {
+		this.buildTree = buildTree;
+	}
 
-		boolean allContainEpsilon = true;
-		for (Symbol s : chain) {
-			if (!firstSet.get(s).contains(epsilon)) {
-				allContainEpsilon = false;
-				break;
-			}
-		}
-		if (allContainEpsilon)
-			firstSetForChain.add(epsilon);
+	/**
+	 * Returns whether the parser builds the parse tree
+	 * 
+	 * @return {@code true} if the parse tree is built
+	 */
+	public boolean isBuildTree() {
+		return buildTree;
+	}
 
-		return firstSetForChain;
+	/**
+	 * Returns the parse tree of the last input. The arrays of the tree are
+	 * reused by the next parsing, so the tree is valid only until then.
+	 * 
+	 * @return parse tree or {@code null} if the tree wasn't built or the input
+	 *         contains syntax errors
+	 */
+	public ParseTree getParseTree() {
+		return parseTree;
 	}
 
-	private void calculateFollow() {
-		for (Symbol s : alphabet) {
-			if (s.isNonTerminal())
-				followSet.put(s, new HashSet<Terminal>());
-		}
+	/**
+	 * Returns the grammar, which is used by this parser. If the parser was
+	 * created with {@link ReloadableGrammar}, it's the grammar of the last
+	 * parsing.
+	 * 
+	 * @return compiled grammar or {@code null} if no grammar was compiled
+	 */
+	public CompiledGrammar getGrammar() {
+		return grammar;
+	}
 
-		Map<SimpleEntry<Symbol, Symbol>, Boolean> callTable = new HashMap<SimpleEntry<Symbol, Symbol>, Boolean>();
-		for (Symbol firstS : alphabet) {
-			for (Symbol secondS : alphabet) {
-				callTable.put(new SimpleEntry<Symbol, Symbol>(firstS, secondS), false);
-			}
-		}
+	/**
+	 * Returns the sequence of grammar rules, which were applied during the
+	 * parsing
+	 * 
+	 * @return list of applied rules
+	 * 
+	 */
+	public List<Rule> getSequenceOfAppliedRules() {
+		return sequenceOfAppliedRules;
+	}
 
-		NonTerminal firstSymbol = rules.get(0).getLeftSide();
-		followSet.get(firstSymbol).add(endOfProgram);
-		for (Symbol s : alphabet) {
-			if (s.isNonTerminal()) {
-				follow((NonTerminal) s, null, callTable);
-			}
+	/**
+	 * Implements LL(1) predictive parsing algorithm. The stack holds codes of
+	 * symbols, so no objects are created while the input is parsed. If the
+	 * parse tree is built, the stack also holds the node of every symbol.
+	 * 
+	 * @throws IOException
+	 *             if the token source can't be read
+	 * @throws AnalyzerException
+	 *             if syntax error was found
+	 */
+	private void performParsingAlgorithm() throws IOException, AnalyzerException {
+		ParseTree building = null;
+		if (buildTree) {
+			if (tree == null)
+				tree = new ParseTree();
+			building = tree;
+			building.clear(grammar);
+		}
+		push(endOfProgram.getCode(), -1);
+		int parsedTokensCount = derive(grammar.getStartSymbol().getCode(), 0, 0, -1, building);
+		if (building != null && (errors == null || errors.isEmpty())) {
+			// endOfProgram was counted as the last token
+			building.complete(0, parsedTokensCount - 2);
+			parseTree = building;
 		}
 	}
 
 	/**
-	 * Calculates follow set for nonterminal symbols
+	 * Applies rule {@code X -> Op T X} to the chain on the top of the stack
+	 * and rule of {@code Op} to the current terminal, matches the terminal and
+	 * pushes the operand {@code T}. The chain {@code X} stays on the top
+	 * under the operand.
+	 * 
+	 * @param rule
+	 *            number of rule of the chain
+	 * @param operator
+	 *            code of the current terminal
+	 * @param token
+	 *            number of the current token
+	 * @param building
+	 *            tree, which is built, or {@code null}
 	 */
-	private void follow(NonTerminal s, Symbol caller,
-			Map<SimpleEntry<Symbol, Symbol>, Boolean> callTable) {
-		Boolean called = callTable.get(new SimpleEntry<Symbol, Symbol>(caller, s));
-		if (called != null) {
-			if (called == true)
-				return;
-			else
-				callTable.put(new SimpleEntry<Symbol, Symbol>(caller, s), true);
+	private void applyOperator(int rule, int operator, int token, ParseTree building) {
+		int[] rightSides = grammar.getRightSides();
+		int rightSide = grammar.getRightSide(rule);
+		int operatorRule = grammar.getTableEntry(rightSides[rightSide + 1], operator);
+		ensureCapacity(stackSize + 1);
+		int operand = -1;
+		if (building != null) {
+			int chain = building.expand(nodes[stackSize - 1], rule, token, rightSides,
+					rightSide);
+			operand = chain - 1;
+			int terminal = building.expand(chain - 2, operatorRule, token, rightSides,
+					grammar.getRightSide(operatorRule));
+			building.match(terminal, token);
+			nodes[stackSize - 1] = chain;
+		}
+		nodes[stackSize] = operand;
+		stack[stackSize++] = rightSides[rightSide + 2];
+		if (recordRules) {
+			sequenceOfAppliedRules.add(grammar.getRule(rule));
+			sequenceOfAppliedRules.add(grammar.getRule(operatorRule));
+		}
+		if (listener != null) {
+			listener.ruleApplied(grammar.getRule(rule));
+			listener.ruleApplied(grammar.getRule(operatorRule));
+			listener.terminalMatched((Terminal) grammar.getSymbol(operator), inputToken);
 		}
+	}
 
-		Set<Terminal> follow = followSet.get(s);
-		Set<Terminal> auxiliarySet;
-
-		List<SimpleEntry<NonTerminal, Symbol[]>> list = getLeftSideRightChain(s);
-		for (SimpleEntry<NonTerminal, Symbol[]> pair : list) {
-			Symbol[] rightChain = pair.getValue();
-			NonTerminal leftSide = pair.getKey();
-			if (rightChain.length != 0) {
-				auxiliarySet = first(rightChain);
-				auxiliarySet.remove(epsilon);
-				follow.addAll(auxiliarySet);
-				if (first(rightChain).contains(epsilon)) {
-					follow(leftSide, s, callTable);
-					follow.addAll(followSet.get(leftSide));
-				}
-			} else {
-				follow(leftSide, s, callTable);
-				follow.addAll(followSet.get(leftSide));
-			}
+	/**
+	 * Parses the region of the list of tokens as derivation of the
+	 * nonterminal. The token after the region is used as lookahead, but it's
+	 * not matched, so the region is parsed the same way as in the parsing of
+	 * the whole list. Nodes of the derivation are appended to the tree.
+	 * 
+	 * @param list
+	 *            list of significant tokens
+	 * @param from
+	 *            index of the first token of the region, inclusive
+	 * @param to
+	 *            index of the last token of the region, exclusive
+	 * @param goal
+	 *            code of nonterminal
+	 * @param target
+	 *            tree, which the nodes are appended to
+	 * @return index of the node of nonterminal or {@code -1} if the region
+	 *         isn't derived from the nonterminal
+	 */
+	int parseRegion(List<Token> list, int from, int to, int goal, ParseTree target) {
+		checkGrammar();
+		reset();
+		tokens = list;
+		position = from;
+		int size = target.size();
+		int root = target.append(goal);
+		try {
+			derive(goal, root, from, to - from, target);
+			target.complete(root, to - 1);
+			return root;
+		} catch (AnalyzerException e) {
+			target.truncate(size);
+			return -1;
+		} catch (IOException e) {
+			// tokens of the list are not read from any stream
+			throw new IllegalStateException(e);
+		} finally {
+			tokens = null;
 		}
 	}
 
 	/**
-	 * Constructs grammar rules from file
+	 * Derives the input from the nonterminal. If the length of input is
+	 * limited, the derivation has to end right before the token, which
+	 * follows the limited input.
 	 * 
-	 * @param grammarFile
-	 *            file with grammar rules
-	 * @throws FileNotFoundException
-	 *             if file with the specified pathname does not exist
+	 * @param goal
+	 *            code of nonterminal
+	 * @param root
+	 *            node of nonterminal in the tree
+	 * @param firstToken
+	 *            number of the first token of the input
+	 * @param length
+	 *            number of tokens to be derived or {@code -1} if the whole
+	 *            input is derived together with {@code endOfProgram}
+	 * @param building
+	 *            tree, which is built, or {@code null}
+	 * @return number of parsed tokens
+	 * @throws IOException
+	 *             if the token source can't be read
+	 * @throws AnalyzerException
+	 *             if syntax error was found
 	 */
-	private void parseRules(File grammarFile) throws FileNotFoundException {
-		nameToSymbol.put("EPSILON", epsilon);
-
-		Scanner data = new Scanner(grammarFile);
-		int code = 1;
-		int ruleNumber = 0;
-		while (data.hasNext()) {
-			StringTokenizer t = new StringTokenizer(data.nextLine());
-			String symbolName = t.nextToken();
-			if (!nameToSymbol.containsKey(symbolName)) {
-				Symbol s = new NonTerminal(code, symbolName);
-				if (code == 1)
-					startSymbol = (NonTerminal) s;
-				nameToSymbol.put(symbolName, s);
-				alphabet.add(s);
-				code++;
-			}
-			t.nextToken();// ->
-
-			NonTerminal leftSide = (NonTerminal) nameToSymbol.get(symbolName);
-			while (t.hasMoreTokens()) {
-				List<Symbol> rightSide = new ArrayList<Symbol>();
-				do {
-					symbolName = t.nextToken();
-					if (!symbolName.equals("|")) {
-						if (!nameToSymbol.containsKey(symbolName)) {
-							Symbol s;
-							if (Character.isUpperCase(symbolName.charAt(0)))
-								s = new NonTerminal(code++, symbolName);
-							else
-								s = new Terminal(code++, symbolName);
-							nameToSymbol.put(symbolName, s);
-							alphabet.add(s);
+	private int derive(int goal, int root, int firstToken, int length, ParseTree building)
+			throws IOException, AnalyzerException {
+		int[] rightSides = grammar.getRightSides();
+		int end = endOfProgram.getCode();
+		int empty = epsilon.getCode();
+		push(goal, root);
+		int parsedTokensCount = 0;
+		int inputTop = nextTerminal();
+		boolean inputIsOver = false;
+		do {
+
+			int stackTop = stack[stackSize - 1];
+			if (grammar.isTerminal(stackTop)) {
+				if (stackTop == inputTop && parsedTokensCount != length) {
+					stackSize--;
+					if (inputTop != end) {
+						if (building != null)
+							building.match(nodes[stackSize], firstToken + parsedTokensCount);
+						if (listener != null)
+							listener.terminalMatched((Terminal) grammar.getSymbol(inputTop),
+									inputToken);
+					}
+					if (inputTop == end)
+						inputIsOver = true;
+					else
+						inputTop = nextTerminal();
+					parsedTokensCount++;
+					recovering = false;
+				} else if (errors == null) {
+					throw syntaxError(parsedTokensCount);
+				} else {
+					report(parsedTokensCount);
+					if (isExpectedBelowTop(inputTop)) {
+						stackSize--;
+					} else {
+						inputTop = nextTerminal();
+						parsedTokensCount++;
+					}
+				}
+			} else {
+				int rule = grammar.getTableEntry(stackTop, inputTop);
+				if (rule != -1 && operatorFastPath && grammar.isOperatorRule(rule)
+						&& parsedTokensCount != length) {
+					applyOperator(rule, inputTop, firstToken + parsedTokensCount, building);
+					inputTop = nextTerminal();
+					parsedTokensCount++;
+					recovering = false;
+				} else if (rule != -1) {
+					stackSize--;
+					int rightSide = grammar.getRightSide(rule);
+					ensureCapacity(stackSize + rightSides[rightSide]);
+					int child = building == null ? -1 : building.expand(nodes[stackSize], rule,
+							firstToken + parsedTokensCount, rightSides, rightSide);
+					for (int j = rightSide + rightSides[rightSide]; j > rightSide; j--) {
+						if (rightSides[j] != empty) {
+							nodes[stackSize] = child--;
+							stack[stackSize++] = rightSides[j];
 						}
-						rightSide.add(nameToSymbol.get(symbolName));
 					}
-				} while (!symbolName.equals("|") && t.hasMoreTokens());
-				rules.add(new Rule(ruleNumber++, leftSide, rightSide.toArray(new Symbol[] {})));
+					if (recordRules)
+						sequenceOfAppliedRules.add(grammar.getRule(rule));
+					if (listener != null)
+						listener.ruleApplied(grammar.getRule(rule));
+				} else if (errors == null) {
+					throw syntaxError(parsedTokensCount);
+				} else {
+					report(parsedTokensCount);
+					if (grammar.isInFollow(stackTop, inputTop) || isExpectedBelowTop(inputTop)) {
+						stackSize--;
+					} else {
+						inputTop = nextTerminal();
+						parsedTokensCount++;
+					}
+				}
 			}
+		} while (stackSize > 0 && !inputIsOver);
+
+		if (length < 0 ? !inputIsOver : parsedTokensCount != length) {
+			throw syntaxError(parsedTokensCount);
 		}
+		return parsedTokensCount;
+	}
+
+	/**
+	 * Creates syntax error and reports it to the listener
+	 * 
+	 * @param parsedTokensCount
+	 *            number of tokens before the error
+	 * @return syntax error
+	 */
+	private AnalyzerException syntaxError(int parsedTokensCount) {
+		AnalyzerException error = new AnalyzerException("Syntax error after token #"
+				+ parsedTokensCount, parsedTokensCount);
+		if (listener != null)
+			listener.syntaxError(error);
+		return error;
 	}
 
 	/**
-	 * Returns rules with specified left side
+	 * Adds syntax error to the list of errors, unless the parser is already
+	 * recovering from the previous error
 	 * 
-	 * @param nonTerminalSymbol
-	 *            symbol in the left side of the production
-	 * @return set of rules which contain the specified symbol in the left side
+	 * @param parsedTokensCount
+	 *            number of tokens before the error
 	 */
-	private Set<Rule> getRulesWithLeftSide(NonTerminal nonTerminalSymbol) {
-		Set<Rule> set = new HashSet<Rule>();
-		for (Rule r : rules) {
-			if (r.getLeftSide().equals(nonTerminalSymbol))
-				set.add(r);
+	private void report(int parsedTokensCount) {
+		if (!recovering) {
+			errors.add(syntaxError(parsedTokensCount));
+			recovering = true;
 		}
-		return set;
 	}
 
 	/**
-	 * Returns list of pairs. First element of the pair is the left side of the
-	 * rule if this rule contains specified symbol {@code s} in the right side.
-	 * The second element contains symbols after {@code s} in the right side of
-	 * the rule.
+	 * Checks whether the terminal can be matched by some symbol below the top
+	 * of the stack. Then the top is popped instead of skipping the input, so
+	 * the enclosing constructs are parsed in the usual way.
 	 * 
-	 * @param s
-	 * @return
+	 * @param input
+	 *            code of current terminal of the input
+	 * @return {@code true} if the stack is synchronized by the terminal
 	 */
-	private List<SimpleEntry<NonTerminal, Symbol[]>> getLeftSideRightChain(Symbol s) {
-		List<SimpleEntry<NonTerminal, Symbol[]>> list = new ArrayList<SimpleEntry<NonTerminal, Symbol[]>>();
-		for (Rule r : rules) {
-			Symbol[] rightChain = r.getRightSide();
-			int index = Arrays.asList(rightChain).indexOf(s);
-			if (index != -1) {
-				rightChain = Arrays.copyOfRange(rightChain, index + 1, rightChain.length);
-				list.add(new SimpleEntry<NonTerminal, Symbol[]>(r.getLeftSide(), rightChain));
-			}
+	private boolean isExpectedBelowTop(int input) {
+		for (int i = stackSize - 2; i >= 0; i--) {
+			if (grammar.isTerminal(stack[i]) ? stack[i] == input : grammar.getTableEntry(
+					stack[i], input) != -1)
+				return true;
+		}
+		return false;
+	}
+
+	private void push(int code, int node) {
+		ensureCapacity(stackSize + 1);
+		nodes[stackSize] = node;
+		stack[stackSize++] = code;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > stack.length) {
+			int length = Math.max(capacity, stack.length * 2);
+			stack = Arrays.copyOf(stack, length);
+			nodes = Arrays.copyOf(nodes, length);
 		}
-		return list;
 	}
 
 	/**
-	 * Returns the rule with specified left and right side
+	 * Takes the next significant token of the input and converts it to code
+	 * of terminal for parser by the type of token. Tokens of the list are read
+	 * by index, tokens of the source are pulled one at a time.
 	 * 
-	 * @param leftSide
-	 *            symbol in the left side of the production
-	 * @param rightSide
-	 *            symbols in the right side
-	 * @return rule with specified left and right side or {@code null} if such
-	 *         rule doesn't exist in grammar
+	 * @return code of terminal or code of {@code endOfProgram} if the input is
+	 *         over
+	 * @throws IOException
+	 *             if the token source can't be read
+	 * @throws AnalyzerException
+	 *             if lexical error exists in the input
 	 */
-	private Rule getRule(NonTerminal leftSide, Symbol[] rightSide) {
-		Set<Rule> setOfRules = getRulesWithLeftSide(leftSide);
-		for (Rule r : setOfRules) {
-			if (rightSide.length != r.getRightSide().length)
-				continue;
-			for (int i = 0; i < rightSide.length; i++) {
-				if (r.getRightSide()[i] != rightSide[i])
-					break;
-				else {
-					if (i == rightSide.length - 1) {
-						return r;
-					}
-				}
-			}
+	private int nextTerminal() throws IOException, AnalyzerException {
+		Token token = nextToken();
+		while (token != null
+				&& (token.getTokenType().isAuxiliary() || errors != null
+						&& token.getTokenType() == TokenType.Error))
+			token = nextToken();
+		inputToken = token;
+		if (token == null)
+			return endOfProgram.getCode();
+
+		int code = grammar.getTerminalCode(token.getTokenType());
+		if (code == epsilon.getCode()) {
+			// the token has no terminal, for example it's Error token of the
+			// lexer's recovery, so it's reported at its index in the input
+			int index = position - 1;
+			if (token.getTokenType() == TokenType.Error)
+				throw new AnalyzerException("Lexical error in token #" + index, index);
+			throw new AnalyzerException("Unexpected token #" + index + " of type "
+					+ token.getTokenType(), index);
 		}
+		return code;
+	}
 
-		return null;
+	private Token nextToken() throws IOException, AnalyzerException {
+		if (tokens != null)
+			return position < tokens.size() ? tokens.get(position++) : null;
+		Token token = source.nextToken();
+		if (token != null)
+			position++;
+		return token;
 	}
 }
@@ -0,0 +1,341 @@
+package parser;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import token.TokenType;
+
+/**
+ * The {@code RecursiveDescentGenerator} class generates source code of
+ * recursive-descent parser for the compiled grammar. Every nonterminal is
+ * parsed by its own method, which chooses the rule by {@code switch} on the
+ * code of the current terminal. Cases of the switch are taken from the parsing
+ * table, which is built by first and follow sets, so the generated parser
+ * applies the same rules as {@link Parser} and reports syntax errors after
+ * the same tokens. If the last symbol of rule is its left side, as in
+ * {@code ClassBody -> ClassMember ClassBody}, the method repeats the switch
+ * instead of calling itself, so long lists don't overflow the stack.
+ *
+ * @author Ira Korshunova
+ *
+ */
+public class RecursiveDescentGenerator {
+
+	/** Grammar, which the parser is generated for */
+	private CompiledGrammar grammar;
+
+	/** Names of methods indexed by codes of nonterminals plus one */
+	private String[] methodNames;
+
+	/** Output of the generated code */
+	private Writer out;
+
+	/**
+	 * Creates {@code RecursiveDescentGenerator} object
+	 *
+	 * @param grammar
+	 *            compiled LL(1) grammar
+	 */
+	public RecursiveDescentGenerator(CompiledGrammar grammar) {
+		this.grammar = grammar;
+		methodNames = new String[grammar.getSymbolCount()];
+		Set<String> usedNames = new HashSet<String>();
+		for (int code = 0; code < methodNames.length - 1; code++) {
+			Symbol s = grammar.getSymbol(code);
+			if (s != null && s.isNonTerminal()) {
+				String name = "parse" + toIdentifier(s.getName());
+				if (!usedNames.add(name)) {
+					name += code;
+					usedNames.add(name);
+				}
+				methodNames[code + 1] = name;
+			}
+		}
+	}
+
+	/**
+	 * Writes source code of the parser class
+	 *
+	 * @param packageName
+	 *            package of the class or {@code null} for the default package
+	 * @param className
+	 *            simple name of the class
+	 * @param out
+	 *            output of the source code
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 */
+	public void generate(String packageName, String className, Writer out) throws IOException {
+		if (grammar.getStartSymbol() == null) {
+			throw new IllegalStateException("Grammar has no rules");
+		}
+		this.out = out;
+		line(0, "// Generated by parser.RecursiveDescentGenerator, don't edit");
+		if (packageName != null && !packageName.isEmpty()) {
+			line(0, "package " + packageName + ";");
+		}
+		line(0, "");
+		line(0, "import java.util.Arrays;");
+		line(0, "import java.util.List;");
+		line(0, "");
+		line(0, "import token.Token;");
+		line(0, "import token.TokenType;");
+		line(0, "import exceptions.AnalyzerException;");
+		line(0, "");
+		line(0, "/**");
+		line(0, " * The {@code " + className + "} class represents recursive-descent parser,");
+		line(0, " * which was generated from LL(1) grammar. It applies the same rules as");
+		line(0, " * {@code parser.Parser} with this grammar. Numbers of applied rules are");
+		line(0, " * returned by {@link #getAppliedRules()}.");
+		line(0, " */");
+		line(0, "public class " + className + " {");
+		line(0, "");
+		line(1, "/** Code of terminal, which represents end of program */");
+		line(1, "private static final int END = " + Parser.endOfProgram.getCode() + ";");
+		line(0, "");
+		writeRules();
+		line(0, "");
+		writeTerminals();
+		line(0, "");
+		writeFields();
+		line(0, "");
+		writeParse();
+		for (int code = 0; code < methodNames.length - 1; code++) {
+			if (methodNames[code + 1] != null) {
+				line(0, "");
+				writeMethod(code);
+			}
+		}
+		line(0, "");
+		writeHelpers();
+		line(0, "}");
+		out.flush();
+	}
+
+	private void writeRules() throws IOException {
+		line(1, "/** Rules of the grammar indexed by their numbers */");
+		line(1, "public static final String[] RULES = {");
+		List<Rule> rules = grammar.getRules();
+		for (int i = 0; i < rules.size(); i++) {
+			Rule r = rules.get(i);
+			StringBuilder rule = new StringBuilder(r.getLeftSide().getName()).append(" ->");
+			for (Symbol s : r.getRightSide())
+				rule.append(' ').append(s.getName());
+			line(2, toLiteral(rule.toString()) + (i == rules.size() - 1 ? "" : ","));
+		}
+		line(1, "};");
+	}
+
+	private void writeTerminals() throws IOException {
+		line(1, "/** Codes of terminals indexed by ordinals of token types */");
+		line(1, "private static final int[] TERMINALS = new int[TokenType.values().length];");
+		line(0, "");
+		line(1, "static {");
+		for (TokenType type : TokenType.values()) {
+			int code = grammar.getTerminalCode(type);
+			if (code != Parser.epsilon.getCode()) {
+				line(2, "TERMINALS[TokenType." + type.name() + ".ordinal()] = " + code + ";");
+			}
+		}
+		line(1, "}");
+	}
+
+	private void writeFields() throws IOException {
+		line(1, "/** List of tokens, which is parsed */");
+		line(1, "private List<Token> tokens;");
+		line(0, "");
+		line(1, "/** Index of the next token in the list */");
+		line(1, "private int position;");
+		line(0, "");
+		line(1, "/** Code of the current terminal */");
+		line(1, "private int terminal;");
+		line(0, "");
+		line(1, "/** Number of matched terminals */");
+		line(1, "private int parsedTokensCount;");
+		line(0, "");
+		line(1, "/** Numbers of applied rules */");
+		line(1, "private int[] appliedRules = new int[1024];");
+		line(0, "");
+		line(1, "/** Number of applied rules */");
+		line(1, "private int appliedRulesCount;");
+	}
+
+	private void writeParse() throws IOException {
+		line(1, "/**");
+		line(1, " * Parses the source, represented by the list of tokens. Auxiliary");
+		line(1, " * tokens are skipped.");
+		line(1, " * ");
+		line(1, " * @param list");
+		line(1, " *            list of tokens from the input");
+		line(1, " * @throws AnalyzerException");
+		line(1, " *             if the input contains syntax error");
+		line(1, " */");
+		line(1, "public void parse(List<Token> list) throws AnalyzerException {");
+		line(2, "tokens = list;");
+		line(2, "position = 0;");
+		line(2, "parsedTokensCount = 0;");
+		line(2, "appliedRulesCount = 0;");
+		line(2, "try {");
+		line(3, "terminal = nextTerminal();");
+		line(3, methodName(grammar.getStartSymbol().getCode()) + "();");
+		line(3, "match(END);");
+		line(2, "} finally {");
+		line(3, "tokens = null;");
+		line(2, "}");
+		line(1, "}");
+		line(0, "");
+		line(1, "/**");
+		line(1, " * Returns numbers of rules, which were applied during the parsing");
+		line(1, " * ");
+		line(1, " * @return numbers of applied rules");
+		line(1, " */");
+		line(1, "public int[] getAppliedRules() {");
+		line(2, "return Arrays.copyOf(appliedRules, appliedRulesCount);");
+		line(1, "}");
+	}
+
+	/**
+	 * Writes method, which parses the nonterminal
+	 *
+	 * @param nonTerminal
+	 *            code of nonterminal
+	 */
+	private void writeMethod(int nonTerminal) throws IOException {
+		// terminals, which choose every rule, in the order of codes
+		Map<Integer, List<Integer>> cases = new LinkedHashMap<Integer, List<Integer>>();
+		boolean loop = false;
+		for (int code = -1; code < methodNames.length - 1; code++) {
+			Symbol s = grammar.getSymbol(code);
+			if (s == null || !s.isTerminal() || code == Parser.epsilon.getCode())
+				continue;
+			int rule = grammar.getTableEntry(nonTerminal, code);
+			if (rule == -1)
+				continue;
+			if (!cases.containsKey(rule)) {
+				cases.put(rule, new ArrayList<Integer>());
+				loop |= isTailRule(rule);
+			}
+			cases.get(rule).add(code);
+		}
+
+		int[] rightSides = grammar.getRightSides();
+		int indent = loop ? 3 : 2;
+		line(1, "private void " + methodName(nonTerminal) + "() throws AnalyzerException {");
+		if (loop)
+			line(2, "while (true) {");
+		line(indent, "switch (terminal) {");
+		for (Map.Entry<Integer, List<Integer>> entry : cases.entrySet()) {
+			int rule = entry.getKey();
+			for (int code : entry.getValue())
+				line(indent, "case " + code + ": // " + grammar.getSymbol(code).getName());
+			line(indent + 1, "apply(" + rule + ");");
+			int rightSide = grammar.getRightSide(rule);
+			int last = rightSide + rightSides[rightSide];
+			if (isTailRule(rule))
+				last--;
+			for (int j = rightSide + 1; j <= last; j++) {
+				int code = rightSides[j];
+				if (code == Parser.epsilon.getCode())
+					continue;
+				if (grammar.isTerminal(code))
+					line(indent + 1, "match(" + code + "); // " + grammar.getSymbol(code).getName());
+				else
+					line(indent + 1, methodName(code) + "();");
+			}
+			line(indent + 1, isTailRule(rule) ? "continue;" : "return;");
+		}
+		line(indent, "default:");
+		line(indent + 1, "throw syntaxError();");
+		line(indent, "}");
+		if (loop)
+			line(2, "}");
+		line(1, "}");
+	}
+
+	private void writeHelpers() throws IOException {
+		line(1, "private void apply(int rule) {");
+		line(2, "if (appliedRulesCount == appliedRules.length)");
+		line(3, "appliedRules = Arrays.copyOf(appliedRules, appliedRulesCount * 2);");
+		line(2, "appliedRules[appliedRulesCount++] = rule;");
+		line(1, "}");
+		line(0, "");
+		line(1, "private void match(int code) throws AnalyzerException {");
+		line(2, "if (terminal != code)");
+		line(3, "throw syntaxError();");
+		line(2, "if (code != END)");
+		line(3, "terminal = nextTerminal();");
+		line(2, "parsedTokensCount++;");
+		line(1, "}");
+		line(0, "");
+		line(1, "private int nextTerminal() throws AnalyzerException {");
+		line(2, "while (position < tokens.size()) {");
+		line(3, "Token token = tokens.get(position++);");
+		line(3, "if (!token.getTokenType().isAuxiliary()) {");
+		line(4, "int code = TERMINALS[token.getTokenType().ordinal()];");
+		line(4, "if (code == 0) {");
+		line(5, "int index = position - 1;");
+		line(5, "if (token.getTokenType() == TokenType.Error)");
+		line(6, "throw new AnalyzerException(\"Lexical error in token #\" + index, index);");
+		line(5, "throw new AnalyzerException(\"Unexpected token #\" + index + \" of type \"");
+		line(7, "+ token.getTokenType(), index);");
+		line(4, "}");
+		line(4, "return code;");
+		line(3, "}");
+		line(2, "}");
+		line(2, "return END;");
+		line(1, "}");
+		line(0, "");
+		line(1, "private AnalyzerException syntaxError() {");
+		line(2, "return new AnalyzerException(\"Syntax error after token #\" + parsedTokensCount,");
+		line(4, "parsedTokensCount);");
+		line(1, "}");
+	}
+
+	/**
+	 * Checks whether the last symbol of rule is its left side
+	 */
+	private boolean isTailRule(int rule) {
+		int[] rightSides = grammar.getRightSides();
+		int rightSide = grammar.getRightSide(rule);
+		int length = rightSides[rightSide];
+		return length > 0
+				&& rightSides[rightSide + length] == grammar.getRule(rule).getLeftSide().getCode();
+	}
+
+	private String methodName(int nonTerminal) {
+		return methodNames[nonTerminal + 1];
+	}
+
+	private void line(int indent, String text) throws IOException {
+		for (int i = 0; i < indent; i++)
+			out.write('\t');
+		out.write(text);
+		out.write('\n');
+	}
+
+	private static String toIdentifier(String name) {
+		StringBuilder identifier = new StringBuilder();
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			identifier.append(Character.isJavaIdentifierPart(c) ? c : '_');
+		}
+		return identifier.toString();
+	}
+
+	private static String toLiteral(String text) {
+		StringBuilder literal = new StringBuilder("\"");
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '"' || c == '\\')
+				literal.append('\\');
+			literal.append(c);
+		}
+		return literal.append('"').toString();
+	}
+}
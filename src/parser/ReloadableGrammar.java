@@ -0,0 +1,220 @@
+package parser;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The {@code ReloadableGrammar} class holds the compiled grammar of the file,
+ * which can be changed while the program runs. After {@link #start()} the file
+ * is watched by the background thread, which compiles the new version of the
+ * grammar and publishes it, if the parsing table has no conflicts. Otherwise
+ * the previous grammar is kept and the problem is returned by
+ * {@link #getLastError()}.
+ * <p>
+ * {@code CompiledGrammar} is immutable, so the grammar is replaced by the swap
+ * of the reference. Parsers, which were created by
+ * {@link Parser#Parser(ReloadableGrammar)}, take the current grammar at the
+ * start of every parsing and don't lock anything. The parsing, which has
+ * already started, finishes with the old grammar.
+ *
+ * @author Ira Korshunova
+ *
+ */
+public class ReloadableGrammar {
+
+	/** Time, while the file has to stay unchanged before it's compiled */
+	private static final long QUIET_MILLIS = 100;
+
+	/** File with grammar rules */
+	private File grammarFile;
+
+	/** The current grammar */
+	private AtomicReference<CompiledGrammar> current = new AtomicReference<CompiledGrammar>();
+
+	/** Number of published grammars */
+	private volatile int version;
+
+	/** Reason, why the last version of the file was rejected, or {@code null} */
+	private volatile Exception lastError;
+
+	/** Service, which watches the directory of the file, or {@code null} */
+	private WatchService watcher;
+
+	/** Thread, which reloads the grammar, or {@code null} */
+	private Thread thread;
+
+	/**
+	 * Creates {@code ReloadableGrammar} object and compiles the grammar
+	 *
+	 * @param grammarFile
+	 *            file with grammar rules
+	 * @throws FileNotFoundException
+	 *             if file with the specified pathname does not exist
+	 */
+	public ReloadableGrammar(File grammarFile) throws FileNotFoundException {
+		this.grammarFile = grammarFile.getAbsoluteFile();
+		current.set(CompiledGrammar.compile(this.grammarFile));
+		version = 1;
+	}
+
+	/**
+	 * Returns the current grammar. The same grammar has to be used during
+	 * one parsing.
+	 *
+	 * @return compiled grammar
+	 */
+	public CompiledGrammar get() {
+		return current.get();
+	}
+
+	/**
+	 * Returns number of grammars, which were published, including the first
+	 * one
+	 *
+	 * @return version of the current grammar
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the reason, why the last changed file wasn't published
+	 *
+	 * @return exception or {@code null} if the last reload succeeded
+	 */
+	public Exception getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * Returns the file, which the grammar is compiled from
+	 *
+	 * @return absolute pathname of the grammar file
+	 */
+	public File getGrammarFile() {
+		return grammarFile;
+	}
+
+	/**
+	 * Compiles the grammar file and publishes the grammar, if its parsing table
+	 * has no conflicts
+	 *
+	 * @return {@code true} if the new grammar was published
+	 */
+	public synchronized boolean reload() {
+		CompiledGrammar grammar;
+		try {
+			grammar = CompiledGrammar.compile(grammarFile);
+		} catch (FileNotFoundException e) {
+			lastError = e;
+			return false;
+		} catch (RuntimeException e) {
+			// the file is malformed or is being written
+			lastError = new IllegalStateException("Grammar can't be compiled: " + e, e);
+			return false;
+		}
+		if (grammar.getStartSymbol() == null) {
+			lastError = new IllegalStateException("Grammar has no rules");
+			return false;
+		}
+		List<Conflict> conflicts = grammar.getConflicts();
+		if (!conflicts.isEmpty()) {
+			lastError = new IllegalStateException("Grammar is not LL(1): " + conflicts);
+			return false;
+		}
+		current.set(grammar);
+		version++;
+		lastError = null;
+		return true;
+	}
+
+	/**
+	 * Starts the daemon thread, which reloads the grammar after every change
+	 * of the file
+	 *
+	 * @throws IOException
+	 *             if the directory of the file can't be watched
+	 */
+	public synchronized void start() throws IOException {
+		if (thread != null) {
+			throw new IllegalStateException("Grammar is already watched");
+		}
+		Path directory = grammarFile.getParentFile().toPath();
+		final Path fileName = grammarFile.toPath().getFileName();
+		final WatchService service = FileSystems.getDefault().newWatchService();
+		directory.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY);
+		watcher = service;
+		thread = new Thread("Grammar watcher") {
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						if (waitForChange(service, fileName, Long.MAX_VALUE)) {
+							// editors write the file in several steps
+							while (waitForChange(service, fileName, QUIET_MILLIS))
+								;
+							reload();
+						}
+					}
+				} catch (InterruptedException e) {
+					// stopped
+				} catch (ClosedWatchServiceException e) {
+					// stopped
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Waits for events of the watch service
+	 *
+	 * @return {@code true} if the grammar file was changed, {@code false} if
+	 *         other files were changed or the time is over
+	 */
+	private static boolean waitForChange(WatchService service, Path fileName, long millis)
+			throws InterruptedException {
+		WatchKey key = service.poll(millis, TimeUnit.MILLISECONDS);
+		if (key == null)
+			return false;
+		boolean changed = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW
+					|| fileName.equals(event.context()))
+				changed = true;
+		}
+		key.reset();
+		return changed;
+	}
+
+	/**
+	 * Stops watching the file. The current grammar is kept.
+	 *
+	 * @throws IOException
+	 *             if the watch service can't be closed
+	 */
+	public synchronized void stop() throws IOException {
+		if (thread == null)
+			return;
+		thread.interrupt();
+		try {
+			watcher.close();
+		} finally {
+			watcher = null;
+			thread = null;
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package parser;
+
+import java.util.Arrays;
+
+import token.Token;
+import exceptions.AnalyzerException;
+
+/**
+ * The {@code RuleTrace} class records numbers of applied rules in the array.
+ * It's a compact form of the sequence of applied rules, which keeps four bytes
+ * for every derivation step.
+ * 
+ * @author Ira Korshunova
+ * 
+ */
+public class RuleTrace implements ParseListener {
+
+	/** Initial capacity of the array */
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	/** Grammar, which rules are recorded */
+	private CompiledGrammar grammar;
+
+	/** Numbers of applied rules */
+	private int[] ruleNumbers = new int[DEFAULT_CAPACITY];
+
+	/** Number of recorded rules */
+	private int size;
+
+	/**
+	 * Creates empty {@code RuleTrace} object
+	 * 
+	 * @param grammar
+	 *            grammar of the parser
+	 */
+	public RuleTrace(CompiledGrammar grammar) {
+		this.grammar = grammar;
+	}
+
+	@Override
+	public void ruleApplied(Rule rule) {
+		if (size == ruleNumbers.length)
+			ruleNumbers = Arrays.copyOf(ruleNumbers, size * 2);
+		ruleNumbers[size++] = rule.getRuleNumber();
+	}
+
+	@Override
+	public void terminalMatched(Terminal terminal, Token token) {
+	}
+
+	@Override
+	public void syntaxError(AnalyzerException error) {
+	}
+
+	/**
+	 * Removes all recorded rules. The array is kept for the next parsing.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * Returns number of recorded rules
+	 * 
+	 * @return number of applied rules
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns number of applied rule
+	 * 
+	 * @param index
+	 *            index of derivation step
+	 * @return number of rule
+	 */
+	public int getRuleNumber(int index) {
+		return ruleNumbers[checkIndex(index)];
+	}
+
+	/**
+	 * Returns applied rule
+	 * 
+	 * @param index
+	 *            index of derivation step
+	 * @return rule of the grammar
+	 */
+	public Rule getRule(int index) {
+		return grammar.getRule(ruleNumbers[checkIndex(index)]);
+	}
+
+	/**
+	 * Returns numbers of all recorded rules
+	 * 
+	 * @return new array with numbers of applied rules
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(ruleNumbers, size);
+	}
+
+	private int checkIndex(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		return index;
+	}
+}
@@ -1,8 +1,8 @@
 package parser;
 
 public abstract class Symbol {
-	private int code;
-	private String name;
+	private final int code;
+	private final String name;
 
 	public Symbol(int code, String name) {
 		this.code = code;
@@ -21,8 +21,9 @@ import javax.swing.JTabbedPane;
 import javax.swing.JTextArea;
 
 import lexer.Lexer;
+import parser.CompiledGrammar;
 import parser.Parser;
-import parser.Rule;
+import parser.RuleTrace;
 import token.Token;
 import exceptions.AnalyzerException;
 
@@ -44,6 +45,10 @@ public class GUI extends JPanel {
 
 	private String sourceCode;
 
+	private Lexer lexer;
+	private String lexedCode;
+	private CompiledGrammar grammar;
+
 	public GUI(JFrame frame) {
 		this.frame = frame;
 		this.setLayout(new BoxLayout(this, BoxLayout.X_AXIS));
@@ -88,19 +93,59 @@ public class GUI extends JPanel {
 	}
 
 	private String readCodeToString(String filePath) throws IOException {
-		StringBuffer fileData = new StringBuffer();
+		StringBuilder fileData = new StringBuilder();
 		BufferedReader reader = new BufferedReader(new FileReader(filePath));
 		char[] buf = new char[1024];
 		int numRead = 0;
 		while ((numRead = reader.read(buf)) != -1) {
-			String readData = String.valueOf(buf, 0, numRead);
-			fileData.append(readData);
-			buf = new char[1024];
+			fileData.append(buf, 0, numRead);
 		}
 		reader.close();
 		return fileData.toString();
 	}
 
+	/**
+	 * Tokenizes the code. If the code was tokenized before, only the region
+	 * between the common prefix and suffix of old and new code is scanned.
+	 */
+	private void tokenize(String code) throws AnalyzerException {
+		if (lexer == null || lexedCode == null) {
+			lexer = new Lexer();
+			lexedCode = code;
+			lexer.tokenize(code);
+			return;
+		}
+		int prefix = 0;
+		int maxLength = Math.min(code.length(), lexedCode.length());
+		while (prefix < maxLength && code.charAt(prefix) == lexedCode.charAt(prefix))
+			prefix++;
+		int suffix = 0;
+		while (suffix < maxLength - prefix
+				&& code.charAt(code.length() - 1 - suffix) == lexedCode.charAt(lexedCode
+						.length() - 1 - suffix))
+			suffix++;
+		int removed = lexedCode.length() - prefix - suffix;
+		lexedCode = code;
+		lexer.update(prefix, removed, code.substring(prefix, code.length() - suffix));
+	}
+
+	/**
+	 * Loads the grammar, which was compiled by {@code GrammarCompiler}, or
+	 * compiles the grammar file if it's newer
+	 */
+	private CompiledGrammar loadGrammar() throws FileNotFoundException {
+		File grammarFile = new File(System.getProperty("user.dir") + "/info/grammar.txt");
+		File compiledFile = new File(System.getProperty("user.dir") + "/info/grammar.bin");
+		if (compiledFile.lastModified() >= grammarFile.lastModified()) {
+			try {
+				return CompiledGrammar.load(compiledFile);
+			} catch (IOException e) {
+				// the grammar is compiled from the file below
+			}
+		}
+		return CompiledGrammar.compile(grammarFile);
+	}
+
 	private class OpenActionListener implements ActionListener {
 		@Override
 		public void actionPerformed(ActionEvent e) {
@@ -116,6 +161,7 @@ public class GUI extends JPanel {
 						sourceCode = readCodeToString(fileChooser.getSelectedFile().getPath());
 						sourceCode += "\n";
 						codeArea.setText(sourceCode);
+						lexer = null;
 					} catch (IOException e1) {
 
 					}
@@ -129,21 +175,26 @@ public class GUI extends JPanel {
 
 		@Override
 		public void actionPerformed(ActionEvent e) {
-			Lexer lexer = new Lexer();
-			Parser parser = new Parser();
+			RuleTrace trace = null;
 			try {
 				lexArea.setText("");
 				syntaxArea.setText("");
 
 				// lexer
 				sourceCode = codeArea.getText();
-				lexer.tokenize(sourceCode);
+				tokenize(sourceCode);
 				JOptionPane.showMessageDialog(frame, "Lexical Analysis is completed",
 						"Information", JOptionPane.INFORMATION_MESSAGE);
 
 				// parser
-				File grammarFile = new File(System.getProperty("user.dir") + "/info/grammar.txt");
-				parser.parse(grammarFile, lexer.getFilteredTokens());
+				if (grammar == null) {
+					grammar = loadGrammar();
+				}
+				Parser parser = new Parser(grammar);
+				trace = new RuleTrace(grammar);
+				parser.setRecordRules(false);
+				parser.setParseListener(trace);
+				parser.parse(lexer.getFilteredTokens());
 				JOptionPane.showMessageDialog(frame, "Parsing is completed!", "Information",
 						JOptionPane.INFORMATION_MESSAGE);
 
@@ -164,8 +215,12 @@ public class GUI extends JPanel {
 					}
 				}
 				
-				for (Rule r : parser.getSequenceOfAppliedRules()) {
-					syntaxArea.append(r.toString() + "\n");
+				if (trace != null) {
+					StringBuilder rules = new StringBuilder();
+					for (int step = 0; step < trace.size(); step++) {
+						rules.append(trace.getRule(step)).append('\n');
+					}
+					syntaxArea.setText(rules.toString());
 				}
 			}
 		}
@@ -0,0 +1,45 @@
+package runner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import parser.CompiledGrammar;
+import parser.Conflict;
+
+/**
+ * The {@code GrammarCompiler} class compiles the grammar file into binary
+ * form at build time, so the parser can load it without analysis of the
+ * grammar. Usage:
+ * 
+ * <blockquote>
+ * 
+ * <pre>
+ *  java runner.GrammarCompiler info/grammar.txt info/grammar.bin
+ * </pre>
+ * 
+ * </blockquote>
+ * 
+ * @author Ira Korshunova
+ * 
+ */
+public class GrammarCompiler {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: java runner.GrammarCompiler <grammar file> <output file>");
+			System.exit(1);
+		}
+		CompiledGrammar grammar = CompiledGrammar.compile(new File(args[0]));
+		for (Conflict conflict : grammar.getConflicts()) {
+			System.err.println("Warning: " + conflict);
+		}
+		OutputStream out = new FileOutputStream(args[1]);
+		try {
+			grammar.write(out);
+		} finally {
+			out.close();
+		}
+	}
+}
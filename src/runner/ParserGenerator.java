@@ -0,0 +1,50 @@
+package runner;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import parser.CompiledGrammar;
+import parser.Conflict;
+import parser.RecursiveDescentGenerator;
+
+/**
+ * The {@code ParserGenerator} class generates recursive-descent parser for the
+ * grammar file at build time. The class name may be qualified by package.
+ * Usage:
+ *
+ * <blockquote>
+ *
+ * <pre>
+ *  java runner.ParserGenerator info/grammar.txt GrammarParser.java GrammarParser
+ * </pre>
+ *
+ * </blockquote>
+ *
+ * @author Ira Korshunova
+ *
+ */
+public class ParserGenerator {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 3) {
+			System.err.println("Usage: java runner.ParserGenerator <grammar file> <output file> "
+					+ "<class name>");
+			System.exit(1);
+		}
+		CompiledGrammar grammar = CompiledGrammar.compile(new File(args[0]));
+		for (Conflict conflict : grammar.getConflicts()) {
+			System.err.println("Warning: " + conflict);
+		}
+		int dot = args[2].lastIndexOf('.');
+		String packageName = dot == -1 ? null : args[2].substring(0, dot);
+		String className = args[2].substring(dot + 1);
+		Writer out = new FileWriter(args[1]);
+		try {
+			new RecursiveDescentGenerator(grammar).generate(packageName, className, out);
+		} finally {
+			out.close();
+		}
+	}
+}
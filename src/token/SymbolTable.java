@@ -0,0 +1,134 @@
+package token;
+
+import java.util.Arrays;
+
+/**
+ * The {@code SymbolTable} class interns names of identifiers. Every distinct
+ * name gets a dense number starting from zero, so identifiers can be compared
+ * by their numbers. Names are looked up directly in the input, a string is
+ * created only when the name occurs for the first time.
+ *
+ * @author Ira Korshunova
+ *
+ */
+public class SymbolTable {
+
+	/** Initial number of slots in the hash table */
+	private static final int DEFAULT_CAPACITY = 64;
+
+	/** Slots of the hash table with number of symbol plus one, or zero */
+	private int[] slots;
+
+	/** Names of symbols by their numbers */
+	private String[] names;
+
+	/** Hashes of symbols by their numbers */
+	private int[] hashes;
+
+	/** Number of symbols */
+	private int size;
+
+	/**
+	 * Creates empty {@code SymbolTable} object
+	 */
+	public SymbolTable() {
+		slots = new int[DEFAULT_CAPACITY];
+		names = new String[DEFAULT_CAPACITY / 2];
+		hashes = new int[DEFAULT_CAPACITY / 2];
+	}
+
+	/**
+	 * Returns number of the name, the name is added if it's new
+	 *
+	 * @param source
+	 *            input, which contains the name
+	 * @param begin
+	 *            the beginning index of the name, inclusive
+	 * @param end
+	 *            the ending index of the name, exclusive
+	 * @return number of symbol
+	 */
+	public int intern(CharSequence source, int begin, int end) {
+		int hash = hash(source, begin, end);
+		int mask = slots.length - 1;
+		int i = hash & mask;
+		while (slots[i] != 0) {
+			int symbol = slots[i] - 1;
+			if (hashes[symbol] == hash && equals(names[symbol], source, begin, end))
+				return symbol;
+			i = (i + 1) & mask;
+		}
+
+		if (size == names.length) {
+			names = Arrays.copyOf(names, size * 2);
+			hashes = Arrays.copyOf(hashes, size * 2);
+		}
+		names[size] = source.subSequence(begin, end).toString();
+		hashes[size] = hash;
+		slots[i] = ++size;
+		if (size * 2 > slots.length)
+			rehash();
+		return size - 1;
+	}
+
+	/**
+	 * Returns number of the name, the name is added if it's new
+	 *
+	 * @param name
+	 *            name of symbol
+	 * @return number of symbol
+	 */
+	public int intern(String name) {
+		return intern(name, 0, name.length());
+	}
+
+	/**
+	 * Returns name of the symbol
+	 *
+	 * @param symbol
+	 *            number of symbol
+	 * @return name of symbol
+	 */
+	public String getName(int symbol) {
+		if (symbol < 0 || symbol >= size)
+			throw new IndexOutOfBoundsException("Symbol: " + symbol);
+		return names[symbol];
+	}
+
+	/**
+	 * Returns number of symbols
+	 *
+	 * @return number of distinct names
+	 */
+	public int size() {
+		return size;
+	}
+
+	private void rehash() {
+		slots = new int[slots.length * 2];
+		int mask = slots.length - 1;
+		for (int symbol = 0; symbol < size; symbol++) {
+			int i = hashes[symbol] & mask;
+			while (slots[i] != 0)
+				i = (i + 1) & mask;
+			slots[i] = symbol + 1;
+		}
+	}
+
+	private static int hash(CharSequence source, int begin, int end) {
+		int h = 0;
+		for (int i = begin; i < end; i++)
+			h = 31 * h + source.charAt(i);
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean equals(String name, CharSequence source, int begin, int end) {
+		if (name.length() != end - begin)
+			return false;
+		for (int i = 0; i < name.length(); i++) {
+			if (name.charAt(i) != source.charAt(begin + i))
+				return false;
+		}
+		return true;
+	}
+}
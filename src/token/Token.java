@@ -23,6 +23,18 @@ public class Token {
 	/** String of characters for this token */
 	private String tokenString;
 
+	/** Input, from which the string is taken when it's requested */
+	private final CharSequence source;
+
+	/** Number of identifier in the symbol table */
+	private int symbolId = -1;
+
+	/** The beginning index of leading trivia or {@code -1} */
+	private int triviaBegin = -1;
+
+	/** The ending index of trailing trivia or {@code -1} */
+	private int triviaEnd = -1;
+
 	/**
 	 * Constructs new {@code Token} object with specified parameters.
 	 * 
@@ -40,6 +52,48 @@ public class Token {
 		this.endIndex = endIndex;
 		this.tokenType = tokenType;
 		this.tokenString = tokenString;
+		this.source = null;
+	}
+
+	/**
+	 * Constructs new {@code Token} object, which takes its string of
+	 * characters from the input only when it's requested
+	 * 
+	 * @param beginIndex
+	 *            the beginning index of this token in the input, inclusive
+	 * @param endIndex
+	 *            the ending index of token in the input, exclusive
+	 * @param source
+	 *            input, which contains this token
+	 * @param tokenType
+	 *            type of token
+	 */
+	public Token(int beginIndex, int endIndex, CharSequence source, TokenType tokenType) {
+		this.beginIndex = beginIndex;
+		this.endIndex = endIndex;
+		this.tokenType = tokenType;
+		this.source = source;
+	}
+
+	/**
+	 * Constructs new {@code Token} object for identifier, which is interned
+	 * in the symbol table
+	 * 
+	 * @param beginIndex
+	 *            the beginning index of this token in the input, inclusive
+	 * @param endIndex
+	 *            the ending index of token in the input, exclusive
+	 * @param tokenString
+	 *            name of identifier shared by all its occurrences
+	 * @param tokenType
+	 *            type of token
+	 * @param symbolId
+	 *            number of identifier in the symbol table
+	 */
+	public Token(int beginIndex, int endIndex, String tokenString, TokenType tokenType,
+			int symbolId) {
+		this(beginIndex, endIndex, tokenString, tokenType);
+		this.symbolId = symbolId;
 	}
 
 	/**
@@ -67,10 +121,66 @@ public class Token {
 	 * @return a string of characters associated with this token
 	 */
 	public String getTokenString() {
-		return tokenString;
+		// tokens may be shared by several threads, so the source is kept and
+		// the string is only read once into the local variable
+		String string = tokenString;
+		if (string == null && source != null) {
+			string = source.subSequence(beginIndex, endIndex).toString();
+			tokenString = string;
+		}
+		return string;
 	}
 
 
+	/**
+	 * Returns number of identifier in the symbol table. Equal identifiers
+	 * have equal numbers.
+	 * 
+	 * @return number of identifier or {@code -1} if token is not interned
+	 */
+	public int getSymbolId() {
+		return symbolId;
+	}
+
+	/**
+	 * Attaches ranges of trivia (comments, whitespaces, tabs and newlines),
+	 * which surround this token. Leading trivia is placed between
+	 * {@code triviaBegin} and the beginning of token, trailing trivia is placed
+	 * between the end of token and {@code triviaEnd}.
+	 * 
+	 * @param triviaBegin
+	 *            the beginning index of leading trivia, inclusive
+	 * @param triviaEnd
+	 *            the ending index of trailing trivia, exclusive
+	 */
+	public void setTrivia(int triviaBegin, int triviaEnd) {
+		if (triviaBegin > beginIndex || triviaEnd < endIndex) {
+			throw new IllegalArgumentException("Trivia must surround the token");
+		}
+		this.triviaBegin = triviaBegin;
+		this.triviaEnd = triviaEnd;
+	}
+
+	/**
+	 * Returns the beginning index of leading trivia
+	 * 
+	 * @return the beginning index of leading trivia, inclusive, or the
+	 *         beginning index of this token if there is no trivia
+	 */
+	public int getLeadingTriviaBegin() {
+		return triviaBegin == -1 ? beginIndex : triviaBegin;
+	}
+
+	/**
+	 * Returns the ending index of trailing trivia
+	 * 
+	 * @return the ending index of trailing trivia, exclusive, or the ending
+	 *         index of this token if there is no trivia
+	 */
+	public int getTrailingTriviaEnd() {
+		return triviaEnd == -1 ? endIndex : triviaEnd;
+	}
+
 	/**
 	 * Returns token's type 
 	 * 
@@ -83,7 +193,7 @@ public class Token {
 	@Override
 	public String toString() {
 		if (!this.getTokenType().isAuxiliary())
-			return tokenType + "  '" + tokenString + "' [" + beginIndex + ";" + endIndex + "] ";
+			return tokenType + "  '" + getTokenString() + "' [" + beginIndex + ";" + endIndex + "] ";
 		else
 			return tokenType + "   [" + beginIndex + ";" + endIndex + "] ";
 	}
@@ -0,0 +1,383 @@
+package token;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The {@code TokenBuffer} class represents a sequence of tokens in compact
+ * form. Tokens are not stored as objects: their indexes, types and values are
+ * kept in parallel arrays. The value of {@code IntConstant} is the number
+ * itself, the value of {@code DoubleConstant} is the bits of the number as
+ * returned by {@code Double.doubleToRawLongBits}, the value of
+ * {@code Identifier} is its number in the symbol table.
+ *
+ * @author Ira Korshunova
+ *
+ */
+public class TokenBuffer {
+
+	/** Initial capacity of the arrays */
+	private static final int DEFAULT_CAPACITY = 64;
+
+	/** All types of tokens indexed by ordinal */
+	private static final TokenType[] TYPES = TokenType.values();
+
+	/** Input, which contains the tokens */
+	private CharSequence source;
+
+	/** Table of identifiers or {@code null} */
+	private SymbolTable symbols;
+
+	/** The beginning indexes of tokens */
+	private int[] begins;
+
+	/** The ending indexes of tokens */
+	private int[] ends;
+
+	/** Ordinals of token types */
+	private byte[] types;
+
+	/** Values of constants and numbers of identifiers */
+	private long[] values;
+
+	/** Number of tokens */
+	private int size;
+
+	/**
+	 * Creates empty {@code TokenBuffer} object for the tokens of the input
+	 *
+	 * @param source
+	 *            input, which contains the tokens
+	 */
+	public TokenBuffer(CharSequence source) {
+		this(source, null);
+	}
+
+	/**
+	 * Creates empty {@code TokenBuffer} object for the tokens of the input,
+	 * identifiers of which are interned in the symbol table
+	 *
+	 * @param source
+	 *            input, which contains the tokens
+	 * @param symbols
+	 *            table of identifiers
+	 */
+	public TokenBuffer(CharSequence source, SymbolTable symbols) {
+		this.source = source;
+		this.symbols = symbols;
+		begins = new int[DEFAULT_CAPACITY];
+		ends = new int[DEFAULT_CAPACITY];
+		types = new byte[DEFAULT_CAPACITY];
+		values = new long[DEFAULT_CAPACITY];
+	}
+
+	/**
+	 * Appends token to the end of the buffer
+	 *
+	 * @param beginIndex
+	 *            the beginning index of the token in the input, inclusive
+	 * @param endIndex
+	 *            the ending index of the token in the input, exclusive
+	 * @param tokenType
+	 *            type of token
+	 * @param value
+	 *            value of constant, number of identifier or {@code 0}
+	 */
+	public void add(int beginIndex, int endIndex, TokenType tokenType, long value) {
+		if (size == begins.length) {
+			int capacity = size * 2;
+			begins = Arrays.copyOf(begins, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			types = Arrays.copyOf(types, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+		begins[size] = beginIndex;
+		ends[size] = endIndex;
+		types[size] = (byte) tokenType.ordinal();
+		values[size] = value;
+		size++;
+	}
+
+	/**
+	 * Returns number of tokens
+	 *
+	 * @return number of tokens in the buffer
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns input, which contains the tokens
+	 *
+	 * @return input source
+	 */
+	public CharSequence getSource() {
+		return source;
+	}
+
+	/**
+	 * Returns the beginning index of token
+	 *
+	 * @param index
+	 *            index of token in the buffer
+	 * @return the beginning index of token in the input, inclusive
+	 */
+	public int getBegin(int index) {
+		return begins[checkIndex(index)];
+	}
+
+	/**
+	 * Returns the ending index of token
+	 *
+	 * @param index
+	 *            index of token in the buffer
+	 * @return the ending index of token in the input, exclusive
+	 */
+	public int getEnd(int index) {
+		return ends[checkIndex(index)];
+	}
+
+	/**
+	 * Returns type of token
+	 *
+	 * @param index
+	 *            index of token in the buffer
+	 * @return type of token
+	 */
+	public TokenType getTokenType(int index) {
+		return TYPES[types[checkIndex(index)]];
+	}
+
+	/**
+	 * Returns value of {@code IntConstant}
+	 *
+	 * @param index
+	 *            index of token in the buffer
+	 * @return value of constant
+	 */
+	public int getIntValue(int index) {
+		return (int) values[checkIndex(index)];
+	}
+
+	/**
+	 * Returns value of {@code DoubleConstant}
+	 *
+	 * @param index
+	 *            index of token in the buffer
+	 * @return value of constant
+	 */
+	public double getDoubleValue(int index) {
+		return Double.longBitsToDouble(values[checkIndex(index)]);
+	}
+
+	/**
+	 * Returns number of {@code Identifier} in the symbol table
+	 *
+	 * @param index
+	 *            index of token in the buffer
+	 * @return number of identifier
+	 */
+	public int getSymbolId(int index) {
+		return (int) values[checkIndex(index)];
+	}
+
+	/**
+	 * Returns the raw value slot of token
+	 *
+	 * @param index
+	 *            index of token in the buffer
+	 * @return value of constant, number of identifier or {@code 0}
+	 */
+	public long getValue(int index) {
+		return values[checkIndex(index)];
+	}
+
+	/**
+	 * Returns a string for token, it's taken from the input
+	 *
+	 * @param index
+	 *            index of token in the buffer
+	 * @return a string of characters associated with token
+	 */
+	public String getTokenString(int index) {
+		checkIndex(index);
+		if (symbols != null && types[index] == TokenType.Identifier.ordinal())
+			return symbols.getName((int) values[index]);
+		return source.subSequence(begins[index], ends[index]).toString();
+	}
+
+	/**
+	 * Creates {@code Token} object for token in the buffer
+	 *
+	 * @param index
+	 *            index of token in the buffer
+	 * @return token, which takes its string from the input when it's requested
+	 */
+	public Token getToken(int index) {
+		checkIndex(index);
+		if (symbols != null && types[index] == TokenType.Identifier.ordinal())
+			return new Token(begins[index], ends[index], symbols.getName((int) values[index]),
+					TokenType.Identifier, (int) values[index]);
+		return new Token(begins[index], ends[index], source, TYPES[types[index]]);
+	}
+
+	/**
+	 * Returns view of the buffer as list of tokens. Objects are created when
+	 * elements of the list are requested.
+	 *
+	 * @return list of tokens
+	 */
+	public List<Token> asList() {
+		return new AbstractList<Token>() {
+			@Override
+			public Token get(int index) {
+				return getToken(index);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	/**
+	 * Creates cursor, which is positioned before the first token
+	 *
+	 * @return cursor over the tokens of this buffer
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	private int checkIndex(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		return index;
+	}
+
+	/**
+	 * The {@code Cursor} class iterates over tokens of the buffer without
+	 * creating objects for them
+	 */
+	public class Cursor {
+
+		/** Index of the current token */
+		private int index = -1;
+
+		/**
+		 * Moves the cursor to the next token
+		 *
+		 * @return {@code false} if there are no more tokens
+		 */
+		public boolean next() {
+			if (index < size)
+				index++;
+			return index < size;
+		}
+
+		/**
+		 * Moves the cursor to the specified token
+		 *
+		 * @param index
+		 *            index of token in the buffer
+		 */
+		public void moveTo(int index) {
+			this.index = checkIndex(index);
+		}
+
+		/**
+		 * Returns index of the current token
+		 *
+		 * @return index of token in the buffer, {@code -1} before the first
+		 *         call of {@link #next()} or number of tokens, if the cursor
+		 *         has passed the last token
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * Returns the beginning index of the current token
+		 *
+		 * @return the beginning index of token in the input, inclusive
+		 */
+		public int getBegin() {
+			return begins[checkIndex(index)];
+		}
+
+		/**
+		 * Returns the ending index of the current token
+		 *
+		 * @return the ending index of token in the input, exclusive
+		 */
+		public int getEnd() {
+			return ends[checkIndex(index)];
+		}
+
+		/**
+		 * Returns type of the current token
+		 *
+		 * @return type of token
+		 */
+		public TokenType getTokenType() {
+			return TYPES[types[checkIndex(index)]];
+		}
+
+		/**
+		 * Returns value of the current {@code IntConstant}. The value slot of
+		 * other tokens isn't converted: for identifiers it's their number in
+		 * the symbol table, for {@code DoubleConstant} it's the low bits of
+		 * the value, and it's {@code 0} for the rest.
+		 *
+		 * @return value of constant
+		 */
+		public int getIntValue() {
+			return (int) values[checkIndex(index)];
+		}
+
+		/**
+		 * Returns value of the current {@code DoubleConstant}. The value slot
+		 * of other tokens is read as bits of {@code double}: it's {@code 0.0}
+		 * for tokens, which are not constants or identifiers, and it's
+		 * meaningless for {@code IntConstant} and {@code Identifier}.
+		 *
+		 * @return value of constant
+		 */
+		public double getDoubleValue() {
+			return Double.longBitsToDouble(values[checkIndex(index)]);
+		}
+
+		/**
+		 * Returns number of the current {@code Identifier} in the symbol table
+		 *
+		 * @return number of identifier
+		 */
+		public int getSymbolId() {
+			return (int) values[checkIndex(index)];
+		}
+
+		/**
+		 * Returns a string for the current token, as
+		 * {@link TokenBuffer#getTokenString(int)} does
+		 *
+		 * @return a string of characters associated with token
+		 */
+		public String getTokenString() {
+			return TokenBuffer.this.getTokenString(index);
+		}
+
+		/**
+		 * Creates {@code Token} object for the current token, as
+		 * {@link TokenBuffer#getToken(int)} does
+		 *
+		 * @return token, which takes its string from the input when it's
+		 *         requested
+		 */
+		public Token getToken() {
+			return TokenBuffer.this.getToken(index);
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package token;
+
+import java.io.IOException;
+
+import exceptions.AnalyzerException;
+
+/**
+ * The {@code TokenSource} interface represents a source of tokens, which are
+ * separated one by one when they are requested
+ *
+ * @author Ira Korshunova
+ *
+ */
+public interface TokenSource {
+
+	/**
+	 * Returns the next token and moves past it
+	 *
+	 * @return next token or {@code null} if the input is over
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws AnalyzerException
+	 *             if lexical error exists in the input
+	 */
+	Token nextToken() throws IOException, AnalyzerException;
+
+	/**
+	 * Returns the next token without moving past it
+	 *
+	 * @return next token or {@code null} if the input is over
+	 * @throws IOException
+	 *             if an I/O error occurs
+	 * @throws AnalyzerException
+	 *             if lexical error exists in the input
+	 */
+	Token peek() throws IOException, AnalyzerException;
+}
@@ -84,7 +84,9 @@ public enum TokenType {
 
 	Comma,
 
-	Identifier;
+	Identifier,
+
+	Error;
 
 	/**
 	 * Determines if this token is auxiliary